@@ -0,0 +1,79 @@
+// Mutable view over a range of a char array. CsvReader hands fields out as slices so that
+// callers can scan them without copying into Strings; a slice is only valid until the
+// owner reuses its buffer (for CsvReader, the next call to next()).
+public final class CharSlice implements CharSequence {
+
+    private char[] array;
+    private int start;
+    private int end;
+
+    public CharSlice() {
+        this(new char[0], 0, 0);
+    }
+
+    public CharSlice(char[] array, int start, int end) {
+        set(array, start, end);
+    }
+
+    public CharSlice set(char[] array, int start, int end) {
+        this.array = array;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    public char[] array() {
+        return array;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return array[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new CharSlice(array, start + from, start + to);
+    }
+
+    // Narrow the view to drop leading and trailing whitespace, as String.trim() does
+    public CharSlice trim() {
+        while (start < end && array[start] <= ' ') {
+            start++;
+        }
+        while (end > start && array[end - 1] <= ' ') {
+            end--;
+        }
+        return this;
+    }
+
+    public boolean startsWith(String prefix) {
+        if (prefix.length() > length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (array[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return new String(array, start, end - start);
+    }
+}
@@ -0,0 +1,120 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// How far an append-only input has been processed into an output file, so the next run can
+// start at inputOffset instead of from scratch. Optionally carries the RunningStats of the
+// rows processed so far, which the next run merges its new rows into.
+//
+// A checkpoint is only used while both files are as it left them: the output still has
+// outputLength bytes, and the input still holds the same bytes at its start and just before
+// inputOffset (a cheap guard against a rewritten rather than appended input).
+//
+// Binary layout (big-endian, DataOutputStream):
+//   int magic 'CHKP', int format version, long input offset, long input guard,
+//   long output length, long rows, boolean has stats, [RunningStats]
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x43484B50; // "CHKP"
+    private static final int VERSION = 1;
+    // Input bytes hashed at the start of the file and just before the offset
+    private static final int GUARD_BYTES = 4096;
+
+    public final long inputOffset;
+    public final long inputGuard;
+    public final long outputLength;
+    public final long rows;
+    public final RunningStats stats; // null when the step keeps no statistics
+
+    private Checkpoint(long inputOffset, long inputGuard, long outputLength, long rows, RunningStats stats) {
+        this.inputOffset = inputOffset;
+        this.inputGuard = inputGuard;
+        this.outputLength = outputLength;
+        this.rows = rows;
+        this.stats = stats;
+    }
+
+    // Input processed up to inputOffset (e.g. CsvReader.position()), output as it is now
+    public static Checkpoint of(String inputFile, long inputOffset, String outputFile, long rows, RunningStats stats)
+            throws IOException {
+        return new Checkpoint(inputOffset, guard(inputFile, inputOffset), Files.size(Paths.get(outputFile)), rows, stats);
+    }
+
+    // The checkpoint in filePath, or null if there is none yet
+    public static Checkpoint load(String filePath) throws IOException {
+        if (!Files.exists(Paths.get(filePath))) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(filePath + " is not a checkpoint file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + filePath);
+            }
+            long inputOffset = in.readLong();
+            long inputGuard = in.readLong();
+            long outputLength = in.readLong();
+            long rows = in.readLong();
+            RunningStats stats = in.readBoolean() ? RunningStats.read(in) : null;
+            return new Checkpoint(inputOffset, inputGuard, outputLength, rows, stats);
+        }
+    }
+
+    // Written to a temporary file and moved into place, so a crash leaves the old checkpoint
+    public void save(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(inputOffset);
+            out.writeLong(inputGuard);
+            out.writeLong(outputLength);
+            out.writeLong(rows);
+            out.writeBoolean(stats != null);
+            if (stats != null) {
+                stats.write(out);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Can the next run resume from here?
+    public boolean isValidFor(String inputFile, String outputFile) throws IOException {
+        Path input = Paths.get(inputFile);
+        Path output = Paths.get(outputFile);
+        return Files.exists(input) && Files.exists(output)
+                && Files.size(input) >= inputOffset
+                && Files.size(output) == outputLength
+                && guard(inputFile, inputOffset) == inputGuard;
+    }
+
+    private static long guard(String inputFile, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+            long hash = hash(channel, 0, Math.min(offset, GUARD_BYTES), 0xcbf29ce484222325L);
+            hash = hash(channel, Math.max(0, offset - GUARD_BYTES), offset, hash);
+            return Lexicon.mix64(hash + offset);
+        }
+    }
+
+    // FNV-1a over bytes [from, to)
+    private static long hash(FileChannel channel, long from, long to, long hash) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) {
+                throw new EOFException("Input shorter than its checkpoint");
+            }
+        }
+        for (int i = 0; i < buffer.limit(); i++) {
+            hash = (hash ^ (buffer.get(i) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
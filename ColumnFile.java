@@ -0,0 +1,387 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Binary columnar feature table, the hand-off format between pipeline stages. Values are
+// stored as fixed-width primitives, one contiguous run per column, so a reader maps the file
+// and uses the columns in place: no parsing, no formatting, no precision lost to "%.4f".
+//
+// Layout (little-endian, so a mapped column is read natively on x86 and ARM):
+//   int magic 'COLF', int format version, long row count, int column count,
+//   per column: short name length, UTF-8 name, byte type, long data offset
+//   then each column's values, starting at its data offset (a multiple of 8)
+//
+// The writer streams rows into one spill file per column and assembles the table on commit(),
+// replacing the target atomically, so the row count need not be known up front. A writer
+// closed without a commit (e.g. by try-with-resources as an exception propagates) deletes
+// its spills and leaves the target as it was.
+public final class ColumnFile implements Closeable {
+
+    public static final String EXTENSION = ".cols";
+
+    private static final int MAGIC = 0x434F4C46; // "COLF"
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 8;
+
+    public enum Type {
+        INT32(4), FLOAT32(4), FLOAT64(8);
+
+        final int width;
+
+        Type(int width) {
+            this.width = width;
+        }
+    }
+
+    private final FileChannel channel;
+    private final int rows;
+    private final String[] names;
+    private final Type[] types;
+    private final ByteBuffer[] data;
+
+    private ColumnFile(FileChannel channel, int rows, String[] names, Type[] types, ByteBuffer[] data) {
+        this.channel = channel;
+        this.rows = rows;
+        this.names = names;
+        this.types = types;
+        this.data = data;
+    }
+
+    // Does the file start with the ColumnFile magic? (CSV never does)
+    public static boolean isColumnFile(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.isRegularFile(path) || Files.size(path) < 4) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, magic, 0);
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    // Map every column of the file read-only
+    public static ColumnFile open(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 1 << 20))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() < 20 || header.getInt() != MAGIC) {
+                throw new IOException(filePath + " is not a column file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported column file version " + version + " in " + filePath);
+            }
+            long rowCount = header.getLong();
+            int columns = header.getInt();
+            String[] names = new String[columns];
+            Type[] types = new Type[columns];
+            ByteBuffer[] data = new ByteBuffer[columns];
+            for (int j = 0; j < columns; j++) {
+                byte[] name = new byte[header.getShort() & 0xffff];
+                header.get(name);
+                names[j] = new String(name, StandardCharsets.UTF_8);
+                int type = header.get();
+                if (type < 0 || type >= Type.values().length) {
+                    throw new IOException("Unknown type " + type + " of column " + names[j] + " in " + filePath);
+                }
+                types[j] = Type.values()[type];
+                long offset = header.getLong();
+                long bytes = rowCount * types[j].width;
+                if (offset + bytes > size || bytes > Integer.MAX_VALUE) {
+                    throw new IOException("Column " + names[j] + " runs past the end of " + filePath);
+                }
+                MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+                data[j] = column.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new ColumnFile(channel, (int) rowCount, names, types, data);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return names.length;
+    }
+
+    public String name(int column) {
+        return names[column];
+    }
+
+    public Type type(int column) {
+        return types[column];
+    }
+
+    // Position of the named column, or -1
+    public int column(String name) {
+        return Arrays.asList(names).indexOf(name);
+    }
+
+    // Zero-copy views of one column, for a column of that type
+    public DoubleBuffer doubles(int column) {
+        return typed(column, Type.FLOAT64).asDoubleBuffer();
+    }
+
+    public FloatBuffer floats(int column) {
+        return typed(column, Type.FLOAT32).asFloatBuffer();
+    }
+
+    public IntBuffer ints(int column) {
+        return typed(column, Type.INT32).asIntBuffer();
+    }
+
+    // One value of any column type, widened to double
+    public double get(int row, int column) {
+        ByteBuffer values = data[column];
+        switch (types[column]) {
+            case INT32:
+                return values.getInt(row * 4);
+            case FLOAT32:
+                return values.getFloat(row * 4);
+            default:
+                return values.getDouble(row * 8);
+        }
+    }
+
+    // Copy rows [from, from + out.length) of a column of any type into out
+    public void read(int column, int from, double[] out) {
+        switch (types[column]) {
+            case INT32: {
+                IntBuffer values = data[column].asIntBuffer();
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = values.get(from + i);
+                }
+                break;
+            }
+            case FLOAT32: {
+                FloatBuffer values = data[column].asFloatBuffer();
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = values.get(from + i);
+                }
+                break;
+            }
+            default:
+                data[column].asDoubleBuffer().get(from, out);
+        }
+    }
+
+    // A whole column as doubles
+    public double[] column(int column) {
+        double[] values = new double[rows];
+        read(column, 0, values);
+        return values;
+    }
+
+    private ByteBuffer typed(int column, Type type) {
+        if (types[column] != type) {
+            throw new IllegalArgumentException("Column " + names[column] + " is " + types[column] + ", not " + type);
+        }
+        return data[column].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // The mappings stay valid until they are garbage collected; this releases the file handle
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static Writer create(String filePath, String[] names, Type[] types) throws IOException {
+        return new Writer(Paths.get(filePath), names, types);
+    }
+
+    // Appends rows; commit() writes the table
+    public static final class Writer implements Closeable {
+        private static final int SPILL_BUFFER = 1 << 16;
+
+        private final Path path;
+        private final String[] names;
+        private final Type[] types;
+        private final Path[] spillPaths;
+        private final FileChannel[] spills;
+        private final ByteBuffer[] buffers;
+        private long rows;
+        private boolean closed;
+
+        private Writer(Path path, String[] names, Type[] types) throws IOException {
+            if (names.length != types.length) {
+                throw new IllegalArgumentException(names.length + " names for " + types.length + " types");
+            }
+            this.path = path;
+            this.names = names.clone();
+            this.types = types.clone();
+            spillPaths = new Path[names.length];
+            spills = new FileChannel[names.length];
+            buffers = new ByteBuffer[names.length];
+            try {
+                for (int j = 0; j < names.length; j++) {
+                    spillPaths[j] = path.resolveSibling(path.getFileName() + ".col" + j + ".tmp");
+                    spills[j] = FileChannel.open(spillPaths[j], StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ);
+                    buffers[j] = ByteBuffer.allocate(SPILL_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+                }
+            } catch (IOException e) {
+                deleteSpills();
+                throw e;
+            }
+        }
+
+        // One value per column; INT32 columns take the value cast to int, FLOAT32 to float
+        public void writeRow(double[] values) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("Column file writer is closed");
+            }
+            if (values.length != names.length) {
+                throw new IllegalArgumentException("Expected " + names.length + " values, got " + values.length);
+            }
+            for (int j = 0; j < values.length; j++) {
+                ByteBuffer buffer = buffers[j];
+                if (buffer.remaining() < 8) {
+                    spill(j);
+                }
+                switch (types[j]) {
+                    case INT32:
+                        buffer.putInt((int) values[j]);
+                        break;
+                    case FLOAT32:
+                        buffer.putFloat((float) values[j]);
+                        break;
+                    default:
+                        buffer.putDouble(values[j]);
+                }
+            }
+            rows++;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        // Write the table with the rows so far and move it into place
+        public void commit() throws IOException {
+            if (closed) {
+                throw new IllegalStateException("Column file writer is closed");
+            }
+            closed = true;
+            try {
+                for (int j = 0; j < names.length; j++) {
+                    spill(j);
+                }
+                assemble();
+            } finally {
+                deleteSpills();
+            }
+        }
+
+        // Abandons the rows unless commit() ran
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            deleteSpills();
+        }
+
+        private void spill(int column) throws IOException {
+            ByteBuffer buffer = buffers[column];
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                spills[column].write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // Header, then every spill file copied to its aligned offset
+        private void assemble() throws IOException {
+            byte[][] nameBytes = new byte[names.length][];
+            long headerBytes = 20;
+            for (int j = 0; j < names.length; j++) {
+                nameBytes[j] = names[j].getBytes(StandardCharsets.UTF_8);
+                headerBytes += 2 + nameBytes[j].length + 1 + 8;
+            }
+            long[] offsets = new long[names.length];
+            long end = align(headerBytes);
+            for (int j = 0; j < names.length; j++) {
+                offsets[j] = end;
+                end = align(end + rows * types[j].width);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate((int) headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(rows).putInt(names.length);
+            for (int j = 0; j < names.length; j++) {
+                header.putShort((short) nameBytes[j].length).put(nameBytes[j]).put((byte) types[j].ordinal())
+                        .putLong(offsets[j]);
+            }
+            header.flip();
+
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            boolean written = false;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (header.hasRemaining()) {
+                    out.write(header);
+                }
+                for (int j = 0; j < names.length; j++) {
+                    long bytes = rows * types[j].width;
+                    long copied = 0;
+                    while (copied < bytes) {
+                        copied += spills[j].transferTo(copied, bytes - copied, out.position(offsets[j] + copied));
+                    }
+                }
+                out.truncate(end);
+                if (out.size() < end) {
+                    // Pad the last column out to the alignment
+                    out.write(ByteBuffer.allocate((int) (end - out.size())), out.size());
+                }
+                written = true;
+            } finally {
+                if (!written) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private void deleteSpills() throws IOException {
+            for (int j = 0; j < spillPaths.length; j++) {
+                if (spills[j] != null) {
+                    spills[j].close();
+                }
+                if (spillPaths[j] != null) {
+                    Files.deleteIfExists(spillPaths[j]);
+                }
+            }
+        }
+    }
+
+    private static long align(long position) {
+        return (position + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated column file");
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+// k-fold cross-validation for SVMTest model selection. Folds are arrays of row indices into
+// the shared training matrix (nothing is copied), and every fold x configuration job runs on
+// a bounded pool. Each configuration reports the mean and variance of its fold accuracies.
+public class CrossValidation {
+
+    public static final class Score {
+        public final double learningRate;
+        public final double regularizationParam;
+        public final double[] foldAccuracies;
+
+        Score(double learningRate, double regularizationParam, double[] foldAccuracies) {
+            this.learningRate = learningRate;
+            this.regularizationParam = regularizationParam;
+            this.foldAccuracies = foldAccuracies;
+        }
+
+        public double mean() {
+            double sum = 0;
+            for (double accuracy : foldAccuracies) {
+                sum += accuracy;
+            }
+            return sum / foldAccuracies.length;
+        }
+
+        // Population variance across folds
+        public double variance() {
+            double mean = mean();
+            double sum = 0;
+            for (double accuracy : foldAccuracies) {
+                sum += (accuracy - mean) * (accuracy - mean);
+            }
+            return sum / foldAccuracies.length;
+        }
+    }
+
+    // Index views of one fold: train on trainRows, validate on testRows
+    public static final class Fold {
+        public final int[] trainRows;
+        public final int[] testRows;
+
+        Fold(int[] trainRows, int[] testRows) {
+            this.trainRows = trainRows;
+            this.testRows = testRows;
+        }
+    }
+
+    // Split rows 0..n-1 into k folds from a seeded shuffle
+    public static Fold[] folds(int[] y, int k, boolean stratified, long seed) {
+        return folds(y, IntStream.range(0, y.length).toArray(), k, stratified, seed);
+    }
+
+    // Split the given rows (e.g. DataSplit.trainRows) into k folds from a seeded shuffle.
+    // Stratified folds deal each label's rows round-robin, so every fold keeps the label balance.
+    public static Fold[] folds(int[] y, int[] rows, int k, boolean stratified, long seed) {
+        if (k < 2 || k > rows.length) {
+            throw new IllegalArgumentException("Need 2 <= k <= " + rows.length + ", got " + k);
+        }
+        int[] permutation = rows.clone();
+        Arrays.sort(permutation); // the result depends only on the set of rows and the seed
+        DataSplit.shuffle(permutation, new Random(seed));
+
+        // fold of permutation[i]
+        int[] foldOf = new int[permutation.length];
+        if (stratified) {
+            // Walk the shuffled rows label by label, dealing in turn
+            int next = 0;
+            for (int label : DataSplit.distinctLabels(y)) {
+                for (int i = 0; i < permutation.length; i++) {
+                    if (y[permutation[i]] == label) {
+                        foldOf[i] = next++ % k;
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < permutation.length; i++) {
+                foldOf[i] = i % k;
+            }
+        }
+
+        int[] sizes = new int[k];
+        for (int fold : foldOf) {
+            sizes[fold]++;
+        }
+        Fold[] folds = new Fold[k];
+        for (int f = 0; f < k; f++) {
+            int[] test = new int[sizes[f]];
+            int[] train = new int[permutation.length - sizes[f]];
+            int t = 0, r = 0;
+            for (int i = 0; i < permutation.length; i++) {
+                if (foldOf[i] == f) {
+                    test[t++] = permutation[i];
+                } else {
+                    train[r++] = permutation[i];
+                }
+            }
+            folds[f] = new Fold(train, test);
+        }
+        return folds;
+    }
+
+    // Score every configuration of the grid on every fold, learning rate major
+    public static List<Score> evaluate(double[][] X, int[] y, Fold[] folds,
+                                       double[] learningRates, double[] regularizationParams,
+                                       SVMTest.TrainingOptions options, int threads) {
+        return evaluate(folds, learningRates, regularizationParams, threads, (svm, fold) -> {
+            svm.trainUntilConverged(X, y, fold.trainRows, options);
+            return svm.calculateAccuracy(X, y, fold.testRows);
+        });
+    }
+
+    // Same for sparse rows, e.g. hashed n-gram features
+    public static List<Score> evaluate(SparseMatrix X, int[] y, Fold[] folds,
+                                       double[] learningRates, double[] regularizationParams,
+                                       SVMTest.TrainingOptions options, int threads) {
+        return evaluate(folds, learningRates, regularizationParams, threads, (svm, fold) -> {
+            svm.trainUntilConverged(X, y, fold.trainRows, options);
+            return svm.calculateAccuracy(X, y, fold.testRows);
+        });
+    }
+
+    // Trains a fresh model on the fold's training rows, returns its accuracy on the test rows
+    private interface FoldJob {
+        double run(SVMTest svm, Fold fold);
+    }
+
+    private static List<Score> evaluate(Fold[] folds, double[] learningRates, double[] regularizationParams,
+                                        int threads, FoldJob foldJob) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Double>> jobs = new ArrayList<>();
+            for (double lr : learningRates) {
+                for (double reg : regularizationParams) {
+                    for (Fold fold : folds) {
+                        jobs.add(pool.submit(() -> foldJob.run(new SVMTest(lr, reg), fold)));
+                    }
+                }
+            }
+
+            List<Score> scores = new ArrayList<>();
+            int job = 0;
+            for (double lr : learningRates) {
+                for (double reg : regularizationParams) {
+                    double[] accuracies = new double[folds.length];
+                    for (int f = 0; f < folds.length; f++) {
+                        accuracies[f] = jobs.get(job++).get();
+                    }
+                    scores.add(new Score(lr, reg, accuracies));
+                }
+            }
+            return scores;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cross-validation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cross-validation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // First configuration with the highest mean accuracy
+    public static Score best(List<Score> scores) {
+        Score best = null;
+        for (Score score : scores) {
+            if (best == null || score.mean() > best.mean()) {
+                best = score;
+            }
+        }
+        return best;
+    }
+
+    public static String describe(Score score) {
+        return String.format("lr=%s reg=%s mean=%.4f variance=%.6f folds=%s", score.learningRate,
+                score.regularizationParam, score.mean(), score.variance(), Arrays.toString(score.foldAccuracies));
+    }
+}
@@ -0,0 +1,407 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Streaming RFC-4180 CSV reader over an NIO channel.
+// Quoted fields may contain commas, doubled quotes and line breaks. The input is decoded
+// (UTF-8) straight into one char buffer and fields are returned as CharSlice views into it,
+// so a record costs no String allocations unless the caller asks for one.
+//
+//     try (CsvReader csv = CsvReader.open(path)) {
+//         while (csv.next()) {
+//             CharSequence review = csv.field(0);
+//             int label = csv.intField(1);
+//         }
+//     }
+//
+// position() is the byte offset just past the last record read, so a later run can resume
+// after it with open(path, offset). Offsets count UTF-8 bytes of the decoded characters and
+// are exact for well-formed input. A reader of a file that is still being appended to should
+// call completeRecordsOnly(fields), so a last record without its line break that is cut off
+// (inside a quoted field, or short of its fields) is left for the next run instead of being
+// returned; heldBack() tells whether that happened. open(path, from, to) reads only the
+// records between two earlier positions.
+public class CsvReader implements Closeable {
+
+    private static final int BYTE_BUFFER_SIZE = 1 << 20;
+    private static final int CHAR_BUFFER_SIZE = 1 << 20;
+
+    private static final Metrics.Timer RECORD_TIMER = Metrics.timer("csv.record");
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes;
+    private boolean channelDone;
+    private long channelRemaining = Long.MAX_VALUE; // bytes still to read before the end bound
+    private boolean decoderDone;
+
+    private char[] chars;
+    private int limit;        // chars[0, limit) hold decoded input
+    private int pos;          // read position
+    private int recordStart;  // start of the record being parsed, everything before it may be dropped
+    private int contentStart; // start of the field being parsed
+    private int write;        // write position while unescaping a quoted field in place
+
+    private int[] fieldStart = new int[8];
+    private int[] fieldEnd = new int[8];
+    private int fieldCount;
+    private CharSlice[] views = new CharSlice[8];
+    private long recordNumber;
+    private long position;       // byte offset of chars[pos] in the input
+    private long recordPosition; // byte offset where the current record starts
+    private int completeFields = -1; // expected fields of a complete record, -1 to take any
+    private boolean quoteOpen;        // the last quoted field ran into the end of input
+    private boolean heldBack;
+
+    public CsvReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+        this.bytes.flip();
+        this.chars = new char[CHAR_BUFFER_SIZE];
+    }
+
+    // Treat a last record with no terminating line break as not yet there unless it parses
+    // as complete (every quote closed and exactly fields fields): otherwise next() returns
+    // false for it, position() stays at its start and heldBack() is true
+    public CsvReader completeRecordsOnly(int fields) {
+        completeFields = fields;
+        return this;
+    }
+
+    // Was an unterminated, incomplete last record left unread?
+    public boolean heldBack() {
+        return heldBack;
+    }
+
+    public static CsvReader open(String filePath) throws IOException {
+        return open(filePath, 0);
+    }
+
+    // Start reading at byteOffset, which must be a record boundary (e.g. an earlier position())
+    public static CsvReader open(String filePath, long byteOffset) throws IOException {
+        return open(filePath, byteOffset, Long.MAX_VALUE);
+    }
+
+    // Read from byteOffset up to endOffset only, both record boundaries; whatever the file
+    // holds after endOffset (e.g. rows appended since endOffset was recorded) is not read
+    public static CsvReader open(String filePath, long byteOffset, long endOffset) throws IOException {
+        if (endOffset < byteOffset) {
+            throw new IllegalArgumentException("End offset " + endOffset + " before start offset " + byteOffset);
+        }
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        channel.position(byteOffset);
+        CsvReader reader = new CsvReader(channel);
+        reader.position = byteOffset;
+        reader.recordPosition = byteOffset;
+        reader.channelRemaining = endOffset - byteOffset;
+        return reader;
+    }
+
+    // Advance to the next record, returns false at end of input
+    public boolean next() throws IOException {
+        long start = RECORD_TIMER.start();
+        recordStart = pos;
+        recordPosition = position;
+        fieldCount = 0;
+        quoteOpen = false;
+        if (pos == limit && !fill()) {
+            return false;
+        }
+
+        boolean terminated = false;
+        while (true) {
+            boolean more = pos < limit || fill();
+            if (more && chars[pos] == '"') {
+                parseQuotedField();
+            } else {
+                parseUnquotedField();
+            }
+
+            // After a field: a comma starts another field, anything else ends the record
+            if (pos == limit && !fill()) {
+                break;
+            }
+            char c = chars[pos];
+            if (c == ',') {
+                pos++;
+                position++;
+                if (pos == limit && !fill()) { // trailing comma at end of input
+                    addField(pos, pos);
+                    break;
+                }
+                continue;
+            }
+            pos++;
+            position++;
+            if (c == '\r' && (pos < limit || fill()) && chars[pos] == '\n') {
+                pos++;
+                position++;
+            }
+            terminated = true;
+            break;
+        }
+        if (!terminated && completeFields >= 0 && (quoteOpen || fieldCount != completeFields)) {
+            heldBack = true;
+            position = recordPosition;
+            fieldCount = 0;
+            RECORD_TIMER.stop(start);
+            return false;
+        }
+        recordNumber++;
+        RECORD_TIMER.stop(start);
+        return true;
+    }
+
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    // Byte offset just past the last record returned by next()
+    public long position() {
+        return position;
+    }
+
+    // Byte offset where the current record starts
+    public long recordPosition() {
+        return recordPosition;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    // View of a field of the current record, valid until the next call to next()
+    public CharSlice field(int index) {
+        checkField(index);
+        CharSlice view = views[index];
+        if (view == null) {
+            view = views[index] = new CharSlice();
+        }
+        return view.set(chars, fieldStart[index], fieldEnd[index]);
+    }
+
+    public String stringField(int index) {
+        checkField(index);
+        return new String(chars, fieldStart[index], fieldEnd[index] - fieldStart[index]);
+    }
+
+    // Parse an integer field (surrounding spaces allowed) without creating a String
+    public int intField(int index) {
+        checkField(index);
+        int i = skipSpaces(fieldStart[index], fieldEnd[index]);
+        int end = trimSpaces(i, fieldEnd[index]);
+        boolean negative = i < end && chars[i] == '-';
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(stringField(index).trim());
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + stringField(index) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // Parse a decimal field. Plain decimals that are exactly representable take a fast path
+    // (mantissa < 2^53 and at most 22 fraction digits, so one correctly rounded division);
+    // anything else falls back to Double.parseDouble.
+    public double doubleField(int index) {
+        checkField(index);
+        int i = skipSpaces(fieldStart[index], fieldEnd[index]);
+        int end = trimSpaces(i, fieldEnd[index]);
+        boolean negative = i < end && chars[i] == '-';
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (i != end || digits == 0 || digits > 15 || fractionDigits > 22) {
+            return Double.parseDouble(stringField(index).trim());
+        }
+        double value = (double) mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkField(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of record " + recordNumber
+                    + " (record has " + fieldCount + " fields)");
+        }
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && chars[from] == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimSpaces(int from, int to) {
+        while (to > from && chars[to - 1] == ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private void parseUnquotedField() throws IOException {
+        contentStart = pos;
+        while (pos < limit || fill()) {
+            char c = chars[pos];
+            if (c == ',' || c == '\n' || c == '\r') {
+                break;
+            }
+            pos++;
+        }
+        for (int i = contentStart; i < pos; i++) {
+            position += utf8Length(chars[i]);
+        }
+        addField(contentStart, pos);
+    }
+
+    // Unescapes the field in place: content is copied down over the opening quote and doubled quotes
+    private void parseQuotedField() throws IOException {
+        pos++; // opening quote
+        position++;
+        contentStart = pos;
+        write = pos;
+        boolean closed = false;
+        while (pos < limit || fill()) {
+            char c = chars[pos++];
+            position += utf8Length(c);
+            if (c != '"') {
+                chars[write++] = c;
+            } else if ((pos < limit || fill()) && chars[pos] == '"') {
+                chars[write++] = '"';
+                pos++;
+                position++;
+            } else {
+                closed = true;
+                // Closing quote; be lenient about stray characters before the next delimiter
+                while ((pos < limit || fill()) && chars[pos] != ',' && chars[pos] != '\n' && chars[pos] != '\r') {
+                    position += utf8Length(chars[pos]);
+                    chars[write++] = chars[pos++];
+                }
+                break;
+            }
+        }
+        // An unterminated quote takes everything up to the end of input
+        quoteOpen |= !closed;
+        addField(contentStart, write);
+    }
+
+    // Encoded size of one UTF-16 unit; each half of a surrogate pair counts for half of its 4 bytes
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        if (c < 0x800 || Character.isSurrogate(c)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = java.util.Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = java.util.Arrays.copyOf(fieldEnd, fieldCount * 2);
+            views = java.util.Arrays.copyOf(views, fieldCount * 2);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldCount++;
+    }
+
+    // Make more input available after limit. Drops everything before the current record
+    // (shifting positions down), grows the buffer for records longer than it, and decodes
+    // more bytes. Returns false once the input is exhausted.
+    private boolean fill() throws IOException {
+        if (decoderDone) {
+            return false;
+        }
+        int shift = recordStart;
+        if (shift > 0) {
+            System.arraycopy(chars, shift, chars, 0, limit - shift);
+            limit -= shift;
+            pos -= shift;
+            write -= shift;
+            contentStart -= shift;
+            recordStart = 0;
+            for (int k = 0; k < fieldCount; k++) {
+                fieldStart[k] -= shift;
+                fieldEnd[k] -= shift;
+            }
+        }
+        if (chars.length - limit < 16) { // record longer than the buffer
+            chars = java.util.Arrays.copyOf(chars, chars.length * 2);
+        }
+
+        int before = limit;
+        CharBuffer out = CharBuffer.wrap(chars, limit, chars.length - limit);
+        while (true) {
+            decoder.decode(bytes, out, channelDone);
+            if (out.position() > before) {
+                break;
+            }
+            if (channelDone) {
+                decoder.flush(out);
+                decoderDone = true;
+                break;
+            }
+            // Needs more bytes (possibly completing a character split across reads)
+            bytes.compact();
+            if (channelRemaining < bytes.remaining()) {
+                bytes.limit(bytes.position() + (int) channelRemaining);
+            }
+            int read = channelRemaining == 0 ? -1 : channel.read(bytes);
+            if (read > 0) {
+                channelRemaining -= read;
+            }
+            channelDone = read < 0;
+            bytes.flip();
+        }
+        limit = out.position();
+        return limit > before;
+    }
+}
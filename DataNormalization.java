@@ -1,99 +1,411 @@
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.List;
 
 public class DataNormalization {
 
+    // A refit scaler within this fraction of a standard deviation (mean shift, and relative
+    // change of the standard deviation) of the one in use is not worth rewriting the output for
+    private static final double RESCALE_TOLERANCE = 0.01;
+
     public static void main(String[] args) {
         String inputFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1.csv"; // Replace with your input file path
         String outputFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2.csv"; // Replace with your output file path
+        String scalerFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/scaler.bin"; // Mean/std per feature, read by Feature
+        String checkpointFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2.checkpoint"; // Statistics so far
 
-        List<double[]> dataList = new ArrayList<>();
-        List<Integer> labels = new ArrayList<>();
-        boolean isHeader = true;
-
-        // Read data from input CSV
-        try (BufferedReader br = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (isHeader) { // Skip the header row
-                    isHeader = false;
-                    continue;
-                }
-                String[] values = line.split(",");
-                labels.add(Integer.parseInt(values[0])); // First column is the label
-                double[] features = new double[values.length - 1];
-                for (int i = 1; i < values.length; i++) {
-                    features[i - 1] = Double.parseDouble(values[i]);
-                }
-                dataList.add(features);
+        // --columnar: read and write binary column files (index --columnar) instead of CSV
+        if (args.length > 0 && args[0].equals("--columnar")) {
+            inputFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1" + ColumnFile.EXTENSION;
+            outputFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2" + ColumnFile.EXTENSION;
+        }
+
+        // --shards <input> [output directory]: standardize the shards of index --shards (its
+        // output directory or manifest, or any directory or glob of feature files)
+        if (args.length > 1 && args[0].equals("--shards")) {
+            String outputDirectory = args.length > 2 ? args[2] : "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2";
+            try {
+                standardizeShards(args[1], outputDirectory, scalerFile, Runtime.getRuntime().availableProcessors());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
             }
+            System.out.println("Data standardization and normalization complete. Saved to: " + outputDirectory);
+            System.out.println("Scaler saved to: " + scalerFile);
+            return;
+        }
+
+        // Only rows appended since the last run are read, unless there is nothing to resume from
+        try {
+            updateIncrementally(inputFile, outputFile, scalerFile, checkpointFile);
         } catch (IOException e) {
             e.printStackTrace();
             return;
         }
 
-        // Convert to array for processing
-        double[][] data = dataList.toArray(new double[0][]);
+        System.out.println("Data standardization and normalization complete. Saved to: " + outputFile);
+        System.out.println("Scaler saved to: " + scalerFile);
+    }
 
-        // Standardize the data
-        double[][] standardizedData = standardizeData(data);
+    // Incremental run: merge the statistics of the rows appended to inputFile since the last
+    // checkpoint into the saved ones. If the refit scaler is within RESCALE_TOLERANCE of the
+    // one in use, only the new rows are standardized (with the scaler in use) and appended;
+    // otherwise the scaler is replaced and the whole output rewritten. Column files are
+    // rewritten whole, since their row count lives in the header. Both passes over a CSV
+    // input stop at the offset the statistics pass reached, so rows appended in between wait
+    // for the next run, and an incomplete last row (as in index) is left for it too.
+    public static void updateIncrementally(String inputFile, String outputFile, String scalerFile,
+                                           String checkpointFile) throws IOException {
+        if (ColumnFile.isColumnFile(inputFile) || outputFile.endsWith(ColumnFile.EXTENSION)) {
+            Scaler scaler = fitScaler(inputFile);
+            printStats(scaler);
+            scaler.save(scalerFile);
+            standardizeFile(inputFile, outputFile, scaler);
+            return;
+        }
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+        if (checkpoint == null || checkpoint.stats == null || !Files.exists(Paths.get(scalerFile))
+                || !checkpoint.isValidFor(inputFile, outputFile)) {
+            // Stream the file twice: once for the statistics, once to write the standardized rows
+            String[] names;
+            RunningStats stats;
+            long offset;
+            try (CsvReader csv = CsvReader.open(inputFile)) {
+                names = featureNames(csv, inputFile);
+                csv.completeRecordsOnly(names.length + 1);
+                stats = accumulate(csv, null);
+                offset = csv.position();
+                warnIfHeldBack(csv, inputFile);
+            }
+            if (stats == null) {
+                throw new IOException("No data rows in " + inputFile);
+            }
+            Scaler scaler = Scaler.fromStats(names, stats);
+            printStats(scaler);
+            scaler.save(scalerFile);
+            standardizeCsv(inputFile, outputFile, scaler, offset);
+            Checkpoint.of(inputFile, offset, outputFile, stats.count(), stats).save(checkpointFile);
+            return;
+        }
 
-        // Save the standardized data into output CSV
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
-            // Write header
-            bw.write("real,pausality,lexical_density,readability,adjective_count");
-            bw.newLine();
+        Scaler current = Scaler.load(scalerFile);
+        RunningStats delta;
+        long offset;
+        try (CsvReader csv = CsvReader.open(inputFile, checkpoint.inputOffset)
+                .completeRecordsOnly(current.features() + 1)) {
+            delta = accumulate(csv, new RunningStats(current.features()));
+            offset = csv.position();
+            warnIfHeldBack(csv, inputFile);
+        }
+        if (delta.count() == 0) {
+            System.out.println("No new rows since the last run");
+            return;
+        }
+        RunningStats stats = checkpoint.stats.merge(delta);
+        String[] names = new String[current.features()];
+        for (int j = 0; j < names.length; j++) {
+            names[j] = current.name(j);
+        }
+        Scaler refit = Scaler.fromStats(names, stats);
+
+        if (isClose(current, refit)) {
+            try (CsvReader csv = CsvReader.open(inputFile, checkpoint.inputOffset, offset);
+                 BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile, true))) {
+                writeStandardized(csv, bw, current);
+            }
+            System.out.println("Appended " + delta.count() + " standardized rows; scaler unchanged");
+        } else {
+            printStats(refit);
+            refit.save(scalerFile);
+            standardizeCsv(inputFile, outputFile, refit, offset);
+            System.out.println("Scaler refit after " + delta.count() + " new rows; all rows standardized again"
+                    + " (retrain the model on the new output)");
+        }
+        Checkpoint.of(inputFile, offset, outputFile, stats.count(), stats).save(checkpointFile);
+    }
+
+    // Sharded run over the feature shards of inputSpec (a manifest from index --shards, a
+    // directory or a glob): every shard's statistics are accumulated concurrently and merged
+    // in shard order into one scaler, then the shards are standardized concurrently, each
+    // into the file of the same name in outputDirectory, and listed in a manifest there.
+    public static void standardizeShards(String inputSpec, String outputDirectory, String scalerFile, int threads)
+            throws IOException {
+        List<Path> shards = Shards.resolve(inputSpec);
+        String[] names;
+        try (FeatureRows rows = FeatureRows.open(shards.get(0).toString())) {
+            names = rows.featureNames();
+        }
+        List<RunningStats> partials = Shards.map(shards, threads, shard -> {
+            try (FeatureRows rows = FeatureRows.open(shard.toString())) {
+                if (!Arrays.equals(rows.featureNames(), names)) {
+                    throw new IOException("Other columns than " + shards.get(0));
+                }
+                RunningStats stats = new RunningStats(names.length);
+                double[] features = new double[names.length];
+                while (rows.next()) {
+                    rows.features(features);
+                    stats.add(features);
+                }
+                return stats;
+            }
+        });
+        RunningStats stats = new RunningStats(names.length);
+        for (RunningStats partial : partials) {
+            stats.merge(partial);
+        }
+        if (stats.count() == 0) {
+            throw new IOException("No data rows in " + inputSpec);
+        }
+        Scaler scaler = Scaler.fromStats(names, stats);
+        printStats(scaler);
+        scaler.save(scalerFile);
+
+        Path directory = Paths.get(outputDirectory);
+        Files.createDirectories(directory);
+        List<Shards.Manifest.Entry> entries = Shards.map(shards, threads, shard -> {
+            Path output = directory.resolve(shard.getFileName());
+            if (Files.exists(output) && Files.isSameFile(output, shard)) {
+                throw new IOException("Output directory is the input directory");
+            }
+            long rows = standardizeFile(shard.toString(), output.toString(), scaler);
+            return Shards.Manifest.Entry.of(output, rows, shard);
+        });
+        new Shards.Manifest(directory, entries).write();
+        System.out.println("Standardized " + stats.count() + " rows in " + shards.size() + " shards");
+    }
+
+    private static boolean isClose(Scaler current, Scaler refit) {
+        for (int j = 0; j < current.features(); j++) {
+            double std = current.std(j);
+            if (Math.abs(refit.mean(j) - current.mean(j)) > RESCALE_TOLERANCE * std
+                    || Math.abs(refit.std(j) - std) > RESCALE_TOLERANCE * std) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Pass 1: accumulate per-feature mean and variance (first column is the label and is skipped)
+    public static RunningStats computeStats(String inputFile) throws IOException {
+        try (FeatureRows rows = FeatureRows.open(inputFile)) {
+            RunningStats stats = new RunningStats(rows.features());
+            double[] features = new double[rows.features()];
+            while (rows.next()) {
+                rows.features(features);
+                stats.add(features);
+            }
+            if (stats.count() == 0) {
+                throw new IOException("No data rows in " + inputFile);
+            }
+            return stats;
+        }
+    }
+
+    // Add the remaining rows to stats (created from the first row when null)
+    private static RunningStats accumulate(CsvReader csv, RunningStats stats) throws IOException {
+        double[] features = stats == null ? null : new double[stats.columns()];
+        while (csv.next()) {
+            if (stats == null) {
+                stats = new RunningStats(csv.fieldCount() - 1);
+                features = new double[csv.fieldCount() - 1];
+            }
+            readFeatures(csv, features);
+            stats.add(features);
+        }
+        return stats;
+    }
+
+    // Pass 1 plus the feature names from the header
+    public static Scaler fitScaler(String inputFile) throws IOException {
+        String[] names;
+        try (FeatureRows rows = FeatureRows.open(inputFile)) {
+            names = rows.featureNames();
+        }
+        return Scaler.fromStats(names, computeStats(inputFile));
+    }
 
-            // Write data
-            for (int i = 0; i < standardizedData.length; i++) {
-                bw.write(labels.get(i) + ","); // Add label
-                for (int j = 0; j < standardizedData[i].length; j++) {
-                    bw.write(String.format("%.4f", standardizedData[i][j])); // Limit to 4 decimal places
-                    if (j < standardizedData[i].length - 1) {
-                        bw.write(",");
-                    }
+    // Read the header row; the feature names follow the label column
+    private static String[] featureNames(CsvReader csv, String inputFile) throws IOException {
+        if (!csv.next()) {
+            throw new IOException("Empty input " + inputFile);
+        }
+        String[] names = new String[csv.fieldCount() - 1];
+        for (int i = 1; i < csv.fieldCount(); i++) {
+            names[i - 1] = csv.stringField(i);
+        }
+        return names;
+    }
+
+    // Pass 2: stream the rows back out standardized with the given scaler. Either file may be
+    // CSV or a ColumnFile; an output path ending in ColumnFile.EXTENSION gets a column file,
+    // which keeps full precision. Returns the number of rows.
+    public static long standardizeFile(String inputFile, String outputFile, Scaler scaler) throws IOException {
+        if (outputFile.endsWith(ColumnFile.EXTENSION)) {
+            return standardizeToColumns(inputFile, outputFile, scaler);
+        }
+        try (FeatureRows rows = FeatureRows.open(inputFile)) {
+            return writeCsv(outputFile, bw -> {
+                // Copy the header
+                bw.write(rows.labelName());
+                for (String name : rows.featureNames()) {
+                    bw.write(",");
+                    bw.write(name);
                 }
                 bw.newLine();
+
+                double[] features = new double[scaler.features()];
+                long count = 0;
+                while (rows.next()) {
+                    rows.features(features);
+                    scaler.transform(features, features);
+                    writeRow(bw, rows.label(), features);
+                    count++;
+                }
+                return count;
+            });
+        }
+    }
+
+    // Writes the rows of a CSV output, returning how many
+    private interface CsvBody {
+        long write(BufferedWriter bw) throws IOException;
+    }
+
+    // Written beside outputFile and moved into place once complete, as index --shards and
+    // ColumnFile do, so a failed run leaves the previous output as it was
+    private static long writeCsv(String outputFile, CsvBody body) throws IOException {
+        Path output = Paths.get(outputFile);
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try {
+            long rows;
+            try (BufferedWriter bw = Files.newBufferedWriter(temp)) {
+                rows = body.write(bw);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } finally {
+            Files.deleteIfExists(temp);
         }
+    }
 
-        System.out.println("Data standardization and normalization complete. Saved to: " + outputFile);
+    private static long standardizeToColumns(String inputFile, String outputFile, Scaler scaler) throws IOException {
+        try (FeatureRows rows = FeatureRows.open(inputFile)) {
+            String[] names = new String[rows.features() + 1];
+            ColumnFile.Type[] types = new ColumnFile.Type[names.length];
+            names[0] = rows.labelName();
+            types[0] = ColumnFile.Type.INT32;
+            System.arraycopy(rows.featureNames(), 0, names, 1, rows.features());
+            Arrays.fill(types, 1, types.length, ColumnFile.Type.FLOAT64);
+
+            double[] features = new double[scaler.features()];
+            double[] row = new double[names.length];
+            try (ColumnFile.Writer out = ColumnFile.create(outputFile, names, types)) {
+                while (rows.next()) {
+                    rows.features(features);
+                    scaler.transform(features, features);
+                    row[0] = rows.label();
+                    System.arraycopy(features, 0, row, 1, features.length);
+                    out.writeRow(row);
+                }
+                out.commit();
+                return out.rows();
+            }
+        }
     }
 
-    // Method to standardize data
+    // Standardize the CSV inputFile up to endOffset (a position() of an earlier pass) into
+    // outputFile, header included
+    private static void standardizeCsv(String inputFile, String outputFile, Scaler scaler, long endOffset)
+            throws IOException {
+        try (CsvReader csv = CsvReader.open(inputFile, 0, endOffset);
+             BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
+            // Copy the header
+            String[] names = featureNames(csv, inputFile);
+            bw.write(csv.stringField(0));
+            for (String name : names) {
+                bw.write(",");
+                bw.write(name);
+            }
+            bw.newLine();
+            writeStandardized(csv, bw, scaler);
+        }
+    }
+
+    private static void warnIfHeldBack(CsvReader csv, String inputFile) {
+        if (csv.heldBack()) {
+            System.err.println("Warning: last row of " + inputFile + " at byte " + csv.position()
+                    + " is incomplete, leaving it for the next run");
+        }
+    }
+
+    // Standardize the remaining rows of csv into bw
+    private static void writeStandardized(CsvReader csv, BufferedWriter bw, Scaler scaler) throws IOException {
+        double[] features = new double[scaler.features()];
+        while (csv.next()) {
+            readFeatures(csv, features);
+            scaler.transform(features, features);
+            writeRow(bw, csv.intField(0), features);
+        }
+    }
+
+    private static void writeRow(BufferedWriter bw, int label, double[] features) throws IOException {
+        bw.write(Integer.toString(label)); // Label
+        for (int j = 0; j < features.length; j++) {
+            bw.write(",");
+            bw.write(String.format("%.4f", features[j])); // Limit to 4 decimal places
+        }
+        bw.newLine();
+    }
+
+    private static void readFeatures(CsvReader csv, double[] features) throws IOException {
+        if (csv.fieldCount() - 1 != features.length) {
+            throw new IOException("Row " + csv.recordNumber() + " has " + (csv.fieldCount() - 1)
+                    + " features, expected " + features.length);
+        }
+        for (int i = 1; i < csv.fieldCount(); i++) {
+            features[i - 1] = csv.doubleField(i);
+        }
+    }
+
+    private static void printStats(Scaler scaler) {
+        for (int j = 0; j < scaler.features(); j++) {
+            System.out.println(scaler.mean(j));
+            System.out.println(scaler.std(j));
+        }
+    }
+
+    // Method to standardize data held in memory
     public static double[][] standardizeData(double[][] data) {
         int numFeatures = data[0].length;
-        double[][] standardizedData = new double[data.length][numFeatures];
 
+        // One row-major pass for mean and variance of every column
+        RunningStats stats = new RunningStats(numFeatures);
+        for (double[] datum : data) {
+            stats.add(datum);
+        }
+        // Per-column mean and 1/std, so the element loop is a subtract and a multiply
+        double[] mean = new double[numFeatures];
+        double[] invStd = new double[numFeatures];
         for (int j = 0; j < numFeatures; j++) {
-            // Calculate mean
-            double mean = 0;
-            for (double[] datum : data) {
-                mean += datum[j];
-            }
-            mean /= data.length;
+            mean[j] = stats.mean(j);
+            double std = stats.stdDev(j);
+            invStd[j] = 1 / std;
+            System.out.println(mean[j]);
+            System.out.println(std);
+        }
 
-            // Calculate standard deviation
-            double variance = 0;
-            for (double[] datum : data) {
-                variance += Math.pow(datum[j] - mean, 2);
-            }
-            variance /= data.length;
-            double stddev = Math.sqrt(variance);
-           
-            // Standardize feature column
-            for (int i = 0; i < data.length; i++) {
-                standardizedData[i][j] = (data[i][j] - mean) / stddev;
-                
-                
+        double[][] standardizedData = new double[data.length][numFeatures];
+        for (int i = 0; i < data.length; i++) {
+            double[] row = data[i];
+            double[] out = standardizedData[i];
+            for (int j = 0; j < numFeatures; j++) {
+                out[j] = (row[j] - mean[j]) * invStd[j];
             }
-            System.out.println(mean);
-                System.out.println(stddev) ;
         }
-        
         return standardizedData;
     }
 }
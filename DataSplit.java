@@ -0,0 +1,154 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Train/test splits as index views: trainRows and testRows index into the caller's X and y,
+// so nothing is copied. Permutations are seeded Fisher-Yates shuffles over an int[]
+// (O(n), no boxing). Reservoir handles inputs too large to hold, by sampling the test rows
+// in one streaming pass.
+public class DataSplit {
+
+    public final int[] trainRows;
+    public final int[] testRows;
+
+    DataSplit(int[] trainRows, int[] testRows) {
+        this.trainRows = trainRows;
+        this.testRows = testRows;
+    }
+
+    // In-place Fisher-Yates shuffle
+    public static void shuffle(int[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    // Random permutation of 0..n-1
+    public static int[] permutation(int n, long seed) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        shuffle(values, new Random(seed));
+        return values;
+    }
+
+    // The first trainFraction of a random permutation is the training set
+    public static DataSplit random(int n, double trainFraction, long seed) {
+        int[] order = permutation(n, seed);
+        int trainSize = (int) (trainFraction * n);
+        return new DataSplit(Arrays.copyOf(order, trainSize), Arrays.copyOfRange(order, trainSize, n));
+    }
+
+    // Split each label separately so train and test keep the overall label balance
+    public static DataSplit stratified(int[] y, double trainFraction, long seed) {
+        Random random = new Random(seed);
+        int[] labels = distinctLabels(y);
+        int[] train = new int[y.length];
+        int[] test = new int[y.length];
+        int trainSize = 0, testSize = 0;
+        for (int label : labels) {
+            int[] rows = rowsWithLabel(y, label);
+            shuffle(rows, random);
+            int cut = (int) Math.round(trainFraction * rows.length);
+            System.arraycopy(rows, 0, train, trainSize, cut);
+            System.arraycopy(rows, cut, test, testSize, rows.length - cut);
+            trainSize += cut;
+            testSize += rows.length - cut;
+        }
+        // Interleave the labels again so training does not see one class after the other
+        int[] trainRows = Arrays.copyOf(train, trainSize);
+        int[] testRows = Arrays.copyOf(test, testSize);
+        shuffle(trainRows, random);
+        shuffle(testRows, random);
+        return new DataSplit(trainRows, testRows);
+    }
+
+    // Distinct values of y in ascending order (labels are few, so a linear scan of those seen)
+    static int[] distinctLabels(int[] y) {
+        int[] labels = new int[4];
+        int count = 0;
+        for (int value : y) {
+            int k = 0;
+            while (k < count && labels[k] != value) {
+                k++;
+            }
+            if (k == count) {
+                if (count == labels.length) {
+                    labels = Arrays.copyOf(labels, count * 2);
+                }
+                labels[count++] = value;
+            }
+        }
+        labels = Arrays.copyOf(labels, count);
+        Arrays.sort(labels);
+        return labels;
+    }
+
+    private static int[] rowsWithLabel(int[] y, int label) {
+        int count = 0;
+        for (int value : y) {
+            if (value == label) {
+                count++;
+            }
+        }
+        int[] rows = new int[count];
+        int k = 0;
+        for (int i = 0; i < y.length; i++) {
+            if (y[i] == label) {
+                rows[k++] = i;
+            }
+        }
+        return rows;
+    }
+
+    // Streaming split for inputs of unknown length: offer() every row number once, in any
+    // order of arrival, and a uniform sample of testSize rows becomes the test set
+    // (reservoir sampling, Algorithm R). Memory is O(testSize) whatever the input size.
+    public static final class Reservoir {
+        private final long[] sample;
+        private final Random random;
+        private long seen;
+        private long[] sorted;
+
+        public Reservoir(int testSize, long seed) {
+            this.sample = new long[testSize];
+            this.random = new Random(seed);
+        }
+
+        public void offer(long row) {
+            if (sorted != null) {
+                throw new IllegalStateException("Reservoir already finished");
+            }
+            if (seen < sample.length) {
+                sample[(int) seen] = row;
+            } else {
+                long slot = (long) (random.nextDouble() * (seen + 1));
+                if (slot < sample.length) {
+                    sample[(int) slot] = row;
+                }
+            }
+            seen++;
+        }
+
+        // Test rows in ascending order; call once all rows have been offered
+        public long[] testRows() {
+            if (sorted == null) {
+                sorted = Arrays.copyOf(sample, (int) Math.min(seen, sample.length));
+                Arrays.sort(sorted);
+            }
+            return sorted;
+        }
+
+        // For a second streaming pass: is this row in the test set?
+        public boolean isTest(long row) {
+            return Arrays.binarySearch(testRows(), row) >= 0;
+        }
+
+        public long rowsSeen() {
+            return seen;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+// Per-extractor latency of the standalone calculate* methods, which Feature and index both
+// carry (the fused ReviewScanner pass is timed as a whole under extract.scan)
+public final class ExtractorTimers {
+
+    static final Metrics.Timer PAUSALITY = Metrics.timer("extract.pausality");
+    static final Metrics.Timer TYPE_TOKEN = Metrics.timer("extract.type_token_ratio");
+    static final Metrics.Timer LEXICAL_DENSITY = Metrics.timer("extract.lexical_density");
+    static final Metrics.Timer FLESCH = Metrics.timer("extract.flesch");
+    static final Metrics.Timer SYLLABLES = Metrics.timer("extract.syllables");
+    static final Metrics.Timer ADJECTIVES = Metrics.timer("extract.adjectives");
+
+    private ExtractorTimers() {
+    }
+}
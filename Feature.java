@@ -4,21 +4,13 @@ import java.util.*;
 public class Feature {
 
     // Load stopwords from a file
-    private static Set<String> loadStopwords(String filePath) {
-        Set<String> stopwords = new HashSet<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                stopwords.add(line.trim().toLowerCase());
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading stopwords file: " + e.getMessage());
-        }
-        return stopwords;
+    private static Lexicon loadStopwords(String filePath) {
+        return Lexicon.load(filePath);
     }
 
     // PAUSALITY: Calculate pauses based on stopwords
-    public static int calculatePausality(String review, Set<String> stopwords) {
+    public static int calculatePausality(String review, Lexicon stopwords) {
+        long start = ExtractorTimers.PAUSALITY.start();
         int pauseCount = 0;
         String[] words = review.toLowerCase().split("\\W+"); // Split on non-word characters
 
@@ -28,11 +20,13 @@ public class Feature {
             }
         }
 
+        ExtractorTimers.PAUSALITY.stop(start);
         return pauseCount;
     }
 
     // CONTENT DIVERSITY
     public static double calculateTypeTokenRatio(String review) {
+        long start = ExtractorTimers.TYPE_TOKEN.start();
         String[] words = review.toLowerCase().split("\\W+"); // Split on non-word characters
         Set<String> uniqueWords = new HashSet<>();
         for (String word : words) {
@@ -40,12 +34,12 @@ public class Feature {
                 uniqueWords.add(word);
             }
         }
+        ExtractorTimers.TYPE_TOKEN.stop(start);
         return (double) uniqueWords.size() / words.length;
     }
 
     public static double calculateLexicalDensity(String review) {
-        review = "\"" + review + "\""; 
-        System.out.println(review);
+        long start = ExtractorTimers.LEXICAL_DENSITY.start();
         String[] words = review.toLowerCase().split("\\W+"); // Split on non-word characters
         int lexicalWordCount = 0;
 
@@ -55,19 +49,22 @@ public class Feature {
                 lexicalWordCount++;
             }
         }
-        System.out.println((double) lexicalWordCount / words.length);
+        ExtractorTimers.LEXICAL_DENSITY.stop(start);
         return (double) lexicalWordCount / words.length;
     }
 
     // READABILITY USING FRE
     public static double calculateFleschReadingEase(String text) {
+        long start = ExtractorTimers.FLESCH.start();
         int totalSentences = countSentences(text);
         int totalWords = countWords(text);
         int totalSyllables = countSyllables(text);
 
         // Flesch Reading Ease formula
-        return 206.835 - 1.015 * ((double) totalWords / totalSentences)
+        double score = 206.835 - 1.015 * ((double) totalWords / totalSentences)
                         - 84.6 * ((double) totalSyllables / totalWords);
+        ExtractorTimers.FLESCH.stop(start);
+        return score;
     }
 
     private static int countSentences(String text) {
@@ -79,12 +76,14 @@ public class Feature {
     }
 
     private static int countSyllables(String text) {
+        long start = ExtractorTimers.SYLLABLES.start();
         String[] words = text.toLowerCase().split("\\s+");
         int syllableCount = 0;
 
         for (String word : words) {
             syllableCount += countSyllablesInWord(word);
         }
+        ExtractorTimers.SYLLABLES.stop(start);
         return syllableCount;
     }
 
@@ -103,38 +102,44 @@ public class Feature {
         return Math.max(count, 1);
     }
 
-    private static Set<String> loadAdjectives(String filePath) {
-        Set<String> adjectives = new HashSet<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Add each adjective to the set (convert to lowercase for case-insensitive comparison)
-                adjectives.add(line.trim().toLowerCase());
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading adjectives file: " + e.getMessage());
-        }
-        return adjectives;
+    private static Lexicon loadAdjectives(String filePath) {
+        return Lexicon.load(filePath);
     }
 
-    private static List<String> findAdjectivesInReview(String review, Set<String> adjectives) {
+    private static List<String> findAdjectivesInReview(String review, Lexicon adjectives) {
+        long start = ExtractorTimers.ADJECTIVES.start();
         List<String> foundAdjectives = new ArrayList<>();
         String[] words = review.toLowerCase().split("\\W+");
 
-        // Check each word against the adjectives set
+        // Check each word against the adjectives lexicon
         for (String word : words) {
             if (adjectives.contains(word)) {
                 foundAdjectives.add(word);
             }
         }
+        ExtractorTimers.ADJECTIVES.stop(start);
         return foundAdjectives;
     }
 
    
     
 
+    // Number of model features per review
+    public static final int FEATURES = 4;
+
+    // Unstandardized model features of one review, in training column order:
+    // pausality, lexical density, readability, adjective count
+    public static double[] extractFeatures(ReviewScanner scanner, CharSequence review, double[] out) {
+        scanner.scan(review);
+        out[0] = scanner.pausality() / 6.7;
+        out[1] = scanner.lexicalDensity();
+        out[2] = scanner.fleschReadingEase() / 6.7;
+        out[3] = scanner.adjectiveCount();
+        return out;
+    }
+
     // Function to process the dataset
-    public static void processDataset(Set<String> adjectives, Set<String> stopwords) {
+    public static void processDataset(Lexicon adjectives, Lexicon stopwords, Scaler scaler) {
         Scanner scanner = new Scanner(System.in);
 
         System.out.println("Enter a string: ");
@@ -145,48 +150,30 @@ public class Feature {
         
         String review = line;
 
-        // Process the review to extract features
-        double pausality = calculatePausality(review, stopwords)/6.7;
-       
-        double lexicalDensity = calculateLexicalDensity(review);
-        double readability = calculateFleschReadingEase(review)/6.7;
-        List<String> foundAdjectives = findAdjectivesInReview(review, adjectives);
+        // Process the review to extract features in one pass
+        double[] features = extractFeatures(new ReviewScanner(stopwords, adjectives), review, new double[FEATURES]);
+        double pausality = features[0];
+        double lexicalDensity = features[1];
+        double readability = features[2];
+        int adjectiveCount = (int) features[3];
         
         // Prepare data for standardization
-        double[] features = {pausality / 6.7, lexicalDensity, readability / 6.7, foundAdjectives.size()};
-        double[][] data = {features};
+        double[] standardized = new double[features.length];
 
-        // Standardize the data
-       
-        double pau_mean = 5.083571428571428;
-        
-        double lexical_density_mean =0.9773333333333334;
-        double readability_mean = 9.802476190476186;
-        double adjCount_mean =8.623809523809523;
-
-        double pau_std = 2.712;
-        double ld_std = 0.0163;
-        double readability_std = 1.489;
-        double adj_std = 5.2315;
+        // Standardize with the statistics DataNormalization saved for the training data
+        scaler.transform(features, standardized);
 
         // Print original and standardized values
         System.out.println("Original values:");
         System.out.println("Pausality: " + pausality);
         System.out.println("Lexical Density: " + lexicalDensity);
         System.out.println("Readability (Flesch Reading Ease): " + readability);
-        System.out.println("Adjectives found: " + foundAdjectives.size());
+        System.out.println("Adjectives found: " + adjectiveCount);
         
         System.out.println("\nStandardized values:");
-
-        double pau_stan = (pausality-pau_mean)/pau_std;
-        double ld_stan = (lexicalDensity-lexical_density_mean)/ld_std;
-        double red_stan = (readability-readability_mean)/readability_std;
-        double adj_stan = (foundAdjectives.size()-adjCount_mean)/adj_std;
-        
-       System.out.println(pau_stan);
-       System.out.println(ld_stan);
-       System.out.println(red_stan);
-       System.out.println(adj_stan);
+        for (double value : standardized) {
+            System.out.println(value);
+        }
        scanner.close();
        
     }
@@ -194,13 +181,23 @@ public class Feature {
     public static void main(String[] args) {
         String adjectivesFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/english-adjectives.txt"; // Adjectives file
         String stopwordsFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/stopwords.txt"; // Stopwords file
+        String scalerFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/scaler.bin"; // Written by DataNormalization
 
         // Load adjectives and stopwords
-        Set<String> adjectives = loadAdjectives(adjectivesFilePath);
-        Set<String> stopwords = loadStopwords(stopwordsFilePath);
+        Lexicon adjectives = loadAdjectives(adjectivesFilePath);
+        Lexicon stopwords = loadStopwords(stopwordsFilePath);
+
+        // Load the scaler once at startup
+        Scaler scaler;
+        try {
+            scaler = Scaler.load(scalerFilePath);
+        } catch (IOException e) {
+            System.err.println("Error reading scaler file (run DataNormalization first): " + e.getMessage());
+            return;
+        }
 
         // Process the dataset
-        processDataset(adjectives, stopwords);
+        processDataset(adjectives, stopwords, scaler);
 
         System.out.println("Done");
     }
@@ -0,0 +1,69 @@
+// Dense feature matrix in one contiguous column-major array: column j occupies
+// data[j * rows, (j + 1) * rows). Batch scoring walks it one column at a time, which is a
+// unit-stride multiply-add over all rows that HotSpot's C2 compiler turns into SIMD code.
+public final class FeatureBlock {
+
+    private final int rows;
+    private final int columns;
+    private final double[] data;
+
+    public FeatureBlock(int rows, int columns) {
+        this(rows, columns, new double[Math.multiplyExact(rows, columns)]);
+    }
+
+    // Wrap an existing column-major array
+    public FeatureBlock(int rows, int columns, double[] data) {
+        if (data.length != (long) rows * columns) {
+            throw new IllegalArgumentException("Expected " + (long) rows * columns + " values, got " + data.length);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.data = data;
+    }
+
+    // Copy a jagged row-per-array matrix
+    public static FeatureBlock fromRows(double[][] X) {
+        int columns = X.length == 0 ? 0 : X[0].length;
+        FeatureBlock block = new FeatureBlock(X.length, columns);
+        for (int i = 0; i < X.length; i++) {
+            for (int j = 0; j < columns; j++) {
+                block.data[j * X.length + i] = X[i][j];
+            }
+        }
+        return block;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    // Backing column-major array
+    public double[] data() {
+        return data;
+    }
+
+    // Offset of column j in data()
+    public int columnOffset(int column) {
+        return column * rows;
+    }
+
+    public double get(int row, int column) {
+        return data[column * rows + row];
+    }
+
+    public void set(int row, int column, double value) {
+        data[column * rows + row] = value;
+    }
+
+    // Copy one row into out
+    public double[] row(int row, double[] out) {
+        for (int j = 0; j < columns; j++) {
+            out[j] = data[j * rows + row];
+        }
+        return out;
+    }
+}
@@ -0,0 +1,434 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Persistent cache of review features keyed by a 64-bit hash of the review text, so reposted
+// reviews and rows unchanged since the last run cost a lookup instead of a full scan.
+//
+// Lookups go to a size-bounded LRU map in memory, then to features computed this run and not
+// yet written, then to the segment file on disk. The segment holds fixed-size records sorted
+// by key plus a sparse index (the first key of every block of BLOCK_RECORDS records) that is
+// loaded on open, so a disk lookup is one binary search in memory and one read of a block.
+// New features are merged into a fresh segment on close(), or earlier once FLUSH_ENTRIES are
+// pending, which replaces the old file atomically.
+//
+// Segment layout (big-endian):
+//   int magic 'FCAC', int format version, long fingerprint, long record count,
+//   records: long key, int pausality, double lexical density, double readability,
+//            int adjective count
+//   sparse index: long first key of each block
+//
+// The fingerprint covers the word lists and FEATURES_VERSION; a segment with another
+// fingerprint is ignored and rewritten. Bump FEATURES_VERSION whenever ReviewScanner changes
+// what it computes.
+//
+// One cache serves all featurization workers and shards at once. The segment and its block
+// index are immutable once opened and read with positional reads, without a lock; a flush
+// publishes a new one. The LRU map and the pending features are split into STRIPES by key,
+// each stripe with its own lock, held only for the map operations. A lookup that races the
+// flush closing the old segment counts as a miss: the review is scanned again, which gives
+// the same features.
+public final class FeatureCache implements Closeable {
+
+    private static final int MAGIC = 0x46434143; // "FCAC"
+    private static final int VERSION = 1;
+    private static final int FEATURES_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_BYTES = 32;
+    private static final int BLOCK_RECORDS = 64;
+    // Features computed this run kept in memory before they are merged into the segment
+    private static final int FLUSH_ENTRIES = 1 << 20;
+    // Lock stripes of the in-memory maps (a power of two; keys are mixed, so the top bits spread)
+    private static final int STRIPES = 16;
+
+    // Features of one review, as ReviewScanner computed them
+    public static final class Features {
+        public final int pausality;
+        public final double lexicalDensity;
+        public final double readability;
+        public final int adjectiveCount;
+
+        public Features(int pausality, double lexicalDensity, double readability, int adjectiveCount) {
+            this.pausality = pausality;
+            this.lexicalDensity = lexicalDensity;
+            this.readability = readability;
+            this.adjectiveCount = adjectiveCount;
+        }
+
+        // Features of the review the scanner last scanned
+        public static Features of(ReviewScanner scanner) {
+            return new Features(scanner.pausality(), scanner.lexicalDensity(), scanner.fleschReadingEase(),
+                    scanner.adjectiveCount());
+        }
+    }
+
+    // Sorted records on disk with the first key of each block; never changes once published
+    private static final class Segment {
+        final FileChannel channel;
+        final long records;
+        final long[] blockKeys;
+
+        Segment(FileChannel channel, long records, long[] blockKeys) {
+            this.channel = channel;
+            this.records = records;
+            this.blockKeys = blockKeys;
+        }
+    }
+
+    // Recently used and not yet written features of the keys in one stripe
+    private static final class Stripe {
+        final Map<Long, Features> recent;
+        final Map<Long, Features> pending = new HashMap<>();
+
+        Stripe(int memoryEntries) {
+            recent = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Features> eldest) {
+                    return size() > memoryEntries;
+                }
+            };
+        }
+    }
+
+    private final Path path;
+    private final long fingerprint;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile Segment segment; // null until a segment with our fingerprint exists
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private FeatureCache(Path path, long fingerprint, int memoryEntries) {
+        this.path = path;
+        this.fingerprint = fingerprint;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, memoryEntries / STRIPES));
+        }
+    }
+
+    // Open (or start) the cache at filePath for features computed with these word lists,
+    // keeping up to memoryEntries recently used features in memory
+    public static FeatureCache open(String filePath, Lexicon stopwords, Lexicon adjectives, int memoryEntries)
+            throws IOException {
+        long fingerprint = Lexicon.mix64(stopwords.fingerprint() * 31 + adjectives.fingerprint()) + FEATURES_VERSION;
+        FeatureCache cache = new FeatureCache(Paths.get(filePath), fingerprint, memoryEntries);
+        if (Files.exists(cache.path)) {
+            cache.openSegment();
+        }
+        return cache;
+    }
+
+    // Hash of the review text with every run of whitespace collapsed to one space. The
+    // extractors split on whitespace and non-word runs, so that normalization leaves every
+    // feature unchanged, while reflowed copies of a review share one entry.
+    public static long key(CharSequence review) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        int length = 0;
+        boolean space = false;
+        for (int i = 0; i < review.length(); i++) {
+            char c = review.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+                if (space) {
+                    continue;
+                }
+                space = true;
+                c = ' ';
+            } else {
+                space = false;
+            }
+            hash = (hash ^ c) * 0x100000001b3L;
+            length++;
+        }
+        return Lexicon.mix64(hash + length);
+    }
+
+    // Cached features of the review, or scan it with scanner and remember the result
+    public Features features(CharSequence review, ReviewScanner scanner) throws IOException {
+        long key = key(review);
+        Features features = get(key);
+        if (features == null) {
+            features = Features.of(scanner.scan(review));
+            put(key, features);
+        }
+        return features;
+    }
+
+    public Features get(long key) throws IOException {
+        Stripe stripe = stripe(key);
+        Features features;
+        synchronized (stripe) {
+            features = stripe.recent.get(key);
+            if (features == null) {
+                features = stripe.pending.get(key);
+            }
+        }
+        if (features == null) {
+            features = readSegment(key);
+            if (features != null) {
+                synchronized (stripe) {
+                    stripe.recent.put(key, features);
+                }
+            }
+        }
+        if (features != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return features;
+    }
+
+    public void put(long key, Features features) throws IOException {
+        Stripe stripe = stripe(key);
+        boolean added;
+        synchronized (stripe) {
+            stripe.recent.put(key, features);
+            added = stripe.pending.put(key, features) == null;
+        }
+        // One worker flushes; the others carry on
+        if (added && pendingCount.incrementAndGet() >= FLUSH_ENTRIES && flushLock.tryLock()) {
+            try {
+                if (pendingCount.get() >= FLUSH_ENTRIES) {
+                    flushLocked();
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    // Entries on disk plus those waiting to be written (an upper bound until the next flush)
+    public long size() {
+        Segment current = segment;
+        return (current == null ? 0 : current.records) + pendingCount.get();
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) (key >>> 60) & (STRIPES - 1)];
+    }
+
+    // Merge pending features into the segment. A key that is already on disk (put() without
+    // a get() first) keeps its stored features. Features put while the flush runs stay pending.
+    public void flush() throws IOException {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        // Snapshot of the pending features, sorted by key
+        Map<Long, Features> snapshot = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                snapshot.putAll(stripe.pending);
+            }
+        }
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        long[] keys = new long[snapshot.size()];
+        int k = 0;
+        for (long key : snapshot.keySet()) {
+            keys[k++] = key;
+        }
+        Arrays.sort(keys);
+
+        Segment old = segment;
+        long records = old == null ? 0 : old.records;
+        long[] newBlockKeys = new long[blocks(records + keys.length)];
+        long written = 0;
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeLong(0); // record count, filled in below
+
+            // Channel position is not used by the lookups' positional reads
+            DataInputStream in = null;
+            if (old != null) {
+                old.channel.position(HEADER_BYTES);
+                in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(old.channel), 1 << 16));
+            }
+            long oldLeft = records;
+            long oldKey = oldLeft > 0 ? in.readLong() : 0;
+            int next = 0;
+            while (oldLeft > 0 || next < keys.length) {
+                if (oldLeft > 0 && next < keys.length && keys[next] == oldKey) {
+                    next++;
+                    continue;
+                }
+                boolean fromOld = oldLeft > 0 && (next == keys.length || oldKey < keys[next]);
+                long key = fromOld ? oldKey : keys[next];
+                if (written % BLOCK_RECORDS == 0) {
+                    newBlockKeys[(int) (written / BLOCK_RECORDS)] = key;
+                }
+                out.writeLong(key);
+                if (fromOld) {
+                    out.writeInt(in.readInt());
+                    out.writeDouble(in.readDouble());
+                    out.writeDouble(in.readDouble());
+                    out.writeInt(in.readInt());
+                    if (--oldLeft > 0) {
+                        oldKey = in.readLong();
+                    }
+                } else {
+                    Features features = snapshot.get(keys[next++]);
+                    out.writeInt(features.pausality);
+                    out.writeDouble(features.lexicalDensity);
+                    out.writeDouble(features.readability);
+                    out.writeInt(features.adjectiveCount);
+                }
+                written++;
+            }
+            newBlockKeys = Arrays.copyOf(newBlockKeys, blocks(written));
+            for (long blockKey : newBlockKeys) {
+                out.writeLong(blockKey);
+            }
+            out.flush();
+            ByteBuffer count = ByteBuffer.allocate(8).putLong(0, written);
+            while (count.hasRemaining()) {
+                channel.write(count, 16 + count.position());
+            }
+        }
+
+        if (old != null) {
+            old.channel.close(); // Windows cannot replace a file that is still open
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segment = new Segment(FileChannel.open(path, StandardOpenOption.READ), written, newBlockKeys);
+
+        // Now on disk; a key put again since the snapshot keeps its newer features pending
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.pending.entrySet().removeIf(entry -> {
+                    if (snapshot.get(entry.getKey()) == entry.getValue()) {
+                        pendingCount.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            Segment current = segment;
+            segment = null;
+            if (current != null) {
+                current.channel.close();
+            }
+            flushLock.unlock();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException(path + " is not a feature cache");
+        }
+        if (header.getInt(4) != VERSION || header.getLong(8) != fingerprint) {
+            // Other format or word lists: start empty, the next flush replaces the file
+            channel.close();
+            return;
+        }
+        long count = header.getLong(16);
+        int blocks = blocks(count);
+        ByteBuffer index = ByteBuffer.allocate(blocks * 8);
+        readFully(channel, index, HEADER_BYTES + count * RECORD_BYTES);
+        long[] blockKeys = new long[blocks];
+        index.flip();
+        index.asLongBuffer().get(blockKeys);
+        segment = new Segment(channel, count, blockKeys);
+    }
+
+    // Binary search for the block that may hold key, then within that block
+    private Features readSegment(long key) throws IOException {
+        Segment current = segment;
+        if (current == null) {
+            return null;
+        }
+        int blockIndex = Arrays.binarySearch(current.blockKeys, key);
+        if (blockIndex < 0) {
+            blockIndex = -blockIndex - 2; // last block starting below key
+            if (blockIndex < 0) {
+                return null;
+            }
+        }
+        long first = (long) blockIndex * BLOCK_RECORDS;
+        int count = (int) Math.min(BLOCK_RECORDS, current.records - first);
+        ByteBuffer block = ByteBuffer.allocate(count * RECORD_BYTES);
+        try {
+            readFully(current.channel, block, HEADER_BYTES + first * RECORD_BYTES);
+        } catch (ClosedChannelException e) {
+            return null; // replaced by a flush meanwhile
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = block.getLong(mid * RECORD_BYTES);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                int at = mid * RECORD_BYTES;
+                return new Features(block.getInt(at + 8), block.getDouble(at + 12), block.getDouble(at + 20),
+                        block.getInt(at + 28));
+            }
+        }
+        return null;
+    }
+
+    private static int blocks(long records) {
+        return (int) ((records + BLOCK_RECORDS - 1) / BLOCK_RECORDS);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated feature cache");
+            }
+        }
+    }
+}
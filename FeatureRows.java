@@ -0,0 +1,200 @@
+import java.io.*;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Row-by-row reader for the feature tables the pipeline stages hand each other: the label in
+// the first column, then the features. open() takes either format, by content: a ColumnFile
+// (read from its mapped columns) or CSV with a header row (parsed with CsvReader). A shard
+// spec (see Shards) reads as one table: its files one after another, in shard order.
+public abstract class FeatureRows implements Closeable {
+
+    public static FeatureRows open(String filePath) throws IOException {
+        if (Shards.isSharded(filePath)) {
+            return new Sharded(Shards.resolve(filePath));
+        }
+        if (ColumnFile.isColumnFile(filePath)) {
+            return new Columnar(ColumnFile.open(filePath));
+        }
+        return new Csv(CsvReader.open(filePath), filePath);
+    }
+
+    public abstract String labelName();
+
+    // Names of the feature columns, without the label
+    public abstract String[] featureNames();
+
+    public int features() {
+        return featureNames().length;
+    }
+
+    // Advance to the next row, returns false at the end
+    public abstract boolean next() throws IOException;
+
+    public abstract int label();
+
+    // Features of the current row into out
+    public abstract void features(double[] out) throws IOException;
+
+    private static final class Columnar extends FeatureRows {
+        private final ColumnFile table;
+        private final String[] names;
+        private int row = -1;
+
+        Columnar(ColumnFile table) throws IOException {
+            if (table.columns() < 1) {
+                table.close();
+                throw new IOException("Column file has no label column");
+            }
+            this.table = table;
+            names = new String[table.columns() - 1];
+            for (int j = 0; j < names.length; j++) {
+                names[j] = table.name(j + 1);
+            }
+        }
+
+        @Override
+        public String labelName() {
+            return table.name(0);
+        }
+
+        @Override
+        public String[] featureNames() {
+            return names.clone();
+        }
+
+        @Override
+        public boolean next() {
+            return ++row < table.rows();
+        }
+
+        @Override
+        public int label() {
+            return (int) table.get(row, 0);
+        }
+
+        @Override
+        public void features(double[] out) {
+            for (int j = 0; j < names.length; j++) {
+                out[j] = table.get(row, j + 1);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            table.close();
+        }
+    }
+
+    // Shards in turn, each opened when the one before it runs out; all must share the header
+    private static final class Sharded extends FeatureRows {
+        private final List<Path> shards;
+        private final String labelName;
+        private final String[] names;
+        private FeatureRows current;
+        private int shard;
+
+        Sharded(List<Path> shards) throws IOException {
+            this.shards = shards;
+            current = open(shards.get(0).toString());
+            labelName = current.labelName();
+            names = current.featureNames();
+        }
+
+        @Override
+        public String labelName() {
+            return labelName;
+        }
+
+        @Override
+        public String[] featureNames() {
+            return names.clone();
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            while (!current.next()) {
+                current.close();
+                if (++shard == shards.size()) {
+                    return false;
+                }
+                current = open(shards.get(shard).toString());
+                if (!current.labelName().equals(labelName) || !Arrays.equals(current.featureNames(), names)) {
+                    throw new IOException("Shard " + shards.get(shard) + " has other columns than "
+                            + shards.get(0));
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int label() {
+            return current.label();
+        }
+
+        @Override
+        public void features(double[] out) throws IOException {
+            current.features(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            current.close();
+        }
+    }
+
+    private static final class Csv extends FeatureRows {
+        private final CsvReader csv;
+        private final String labelName;
+        private final String[] names;
+
+        Csv(CsvReader csv, String filePath) throws IOException {
+            this.csv = csv;
+            if (!csv.next()) {
+                csv.close();
+                throw new IOException("Empty input " + filePath);
+            }
+            labelName = csv.stringField(0);
+            names = new String[csv.fieldCount() - 1];
+            for (int i = 1; i < csv.fieldCount(); i++) {
+                names[i - 1] = csv.stringField(i);
+            }
+        }
+
+        @Override
+        public String labelName() {
+            return labelName;
+        }
+
+        @Override
+        public String[] featureNames() {
+            return names.clone();
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            return csv.next();
+        }
+
+        @Override
+        public int label() {
+            return csv.intField(0);
+        }
+
+        @Override
+        public void features(double[] out) throws IOException {
+            if (csv.fieldCount() - 1 != out.length) {
+                throw new IOException("Row " + csv.recordNumber() + " has " + (csv.fieldCount() - 1)
+                        + " features, expected " + out.length);
+            }
+            for (int i = 1; i < csv.fieldCount(); i++) {
+                out[i - 1] = csv.doubleField(i);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            csv.close();
+        }
+    }
+}
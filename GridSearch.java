@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Hyperparameter grid search for SVMTest. Every (learning rate, regularization) cell is
+// trained on its own thread from a bounded pool; all cells share the same read-only
+// training and test matrices. Results come back in grid order and the best cell is the
+// first one with the highest accuracy, exactly as the sequential loop picked it, so the
+// outcome does not depend on thread scheduling.
+public class GridSearch {
+
+    public static final class Result {
+        public final double learningRate;
+        public final double regularizationParam;
+        public final double accuracy;
+        public final SVMTest model;
+
+        Result(double learningRate, double regularizationParam, double accuracy, SVMTest model) {
+            this.learningRate = learningRate;
+            this.regularizationParam = regularizationParam;
+            this.accuracy = accuracy;
+            this.model = model;
+        }
+    }
+
+    // Values from, from*factor, ... up to and including to (same accumulation as a for loop)
+    public static double[] logScale(double from, double to, double factor) {
+        List<Double> values = new ArrayList<>();
+        for (double value = from; value <= to; value *= factor) {
+            values.add(value);
+        }
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    // Train and score every cell of learningRates x regularizationParams, learning rate major
+    public static List<Result> evaluate(double[][] X_train, int[] y_train, double[][] X_test, int[] y_test,
+                                        double[] learningRates, double[] regularizationParams,
+                                        int epochs, int threads) {
+        return evaluate(X_train, y_train, X_test, y_test, learningRates, regularizationParams,
+                svm -> svm.train(X_train, y_train, epochs), threads);
+    }
+
+    // Same, training each cell with early stopping (options are shared read-only by all cells)
+    public static List<Result> evaluate(double[][] X_train, int[] y_train, double[][] X_test, int[] y_test,
+                                        double[] learningRates, double[] regularizationParams,
+                                        SVMTest.TrainingOptions options, int threads) {
+        return evaluate(X_train, y_train, X_test, y_test, learningRates, regularizationParams,
+                svm -> svm.trainUntilConverged(X_train, y_train, options), threads);
+    }
+
+    private static List<Result> evaluate(double[][] X_train, int[] y_train, double[][] X_test, int[] y_test,
+                                         double[] learningRates, double[] regularizationParams,
+                                         Consumer<SVMTest> trainer, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        FeatureBlock testBlock = FeatureBlock.fromRows(X_test); // scored in batch by every cell
+        try {
+            List<Future<Result>> cells = new ArrayList<>();
+            for (double lr : learningRates) {
+                for (double reg : regularizationParams) {
+                    cells.add(pool.submit(() -> {
+                        SVMTest svm = new SVMTest(lr, reg);
+                        trainer.accept(svm);
+                        return new Result(lr, reg, svm.calculateAccuracy(testBlock, y_test), svm);
+                    }));
+                }
+            }
+            List<Result> results = new ArrayList<>(cells.size());
+            for (Future<Result> cell : cells) {
+                results.add(cell.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Grid search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Grid search failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // First result with the highest accuracy
+    public static Result best(List<Result> results) {
+        Result best = null;
+        for (Result result : results) {
+            if (best == null || result.accuracy > best.accuracy) {
+                best = result;
+            }
+        }
+        return best;
+    }
+}
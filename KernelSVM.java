@@ -0,0 +1,867 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Kernel SVM trained in the dual, for the non-linear relationships between the stylometric
+// features that the linear SVMTest cannot fit. The solver is SMO with second-order working
+// set selection (Fan, Chen and Lin 2005, as in LIBSVM): each step optimizes the pair of dual
+// variables that most decreases the objective and touches two rows of the kernel matrix.
+//
+// Those rows are the cost: an n x n kernel matrix does not fit and recomputing a row costs
+// n kernel evaluations. Rows are therefore kept in an LRU cache with a fixed memory budget,
+// and shrinking moves samples that have stuck at a bound to the end of the active set, so
+// rows are computed, cached and scanned only over the samples still being optimized. The
+// gradient of the shrunk samples is rebuilt before the final optimality check.
+//
+// A trained model keeps only its support vectors, and prediction only touches those.
+public class KernelSVM {
+
+    private static final Metrics.Timer TRAIN_TIMER = Metrics.timer("kernel.train");
+    private static final Metrics.Counter EVALUATIONS = Metrics.counter("kernel.evaluations");
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter("kernel.cache.hits");
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter("kernel.cache.misses");
+
+    public enum KernelType {
+        LINEAR, POLYNOMIAL, RBF
+    }
+
+    // K(a, b): a.b, (gamma a.b + coef0)^degree or exp(-gamma |a - b|^2)
+    public static final class Kernel {
+        public final KernelType type;
+        public final double gamma;
+        public final double coef0;
+        public final int degree;
+
+        private Kernel(KernelType type, double gamma, double coef0, int degree) {
+            this.type = type;
+            this.gamma = gamma;
+            this.coef0 = coef0;
+            this.degree = degree;
+        }
+
+        public static Kernel linear() {
+            return new Kernel(KernelType.LINEAR, 0, 0, 1);
+        }
+
+        public static Kernel polynomial(double gamma, double coef0, int degree) {
+            return new Kernel(KernelType.POLYNOMIAL, gamma, coef0, degree);
+        }
+
+        public static Kernel rbf(double gamma) {
+            return new Kernel(KernelType.RBF, gamma, 0, 1);
+        }
+
+        // The same kernel with another gamma
+        public Kernel withGamma(double gamma) {
+            return new Kernel(type, gamma, coef0, degree);
+        }
+
+        public double value(double[] a, double[] b) {
+            switch (type) {
+                case POLYNOMIAL:
+                    return power(gamma * dot(a, b) + coef0, degree);
+                case RBF: {
+                    double sum = 0;
+                    for (int j = 0; j < a.length; j++) {
+                        double d = a[j] - b[j];
+                        sum += d * d;
+                    }
+                    return Math.exp(-gamma * sum);
+                }
+                default:
+                    return dot(a, b);
+            }
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case POLYNOMIAL:
+                    return "polynomial(gamma=" + gamma + ", coef0=" + coef0 + ", degree=" + degree + ")";
+                case RBF:
+                    return "rbf(gamma=" + gamma + ")";
+                default:
+                    return "linear";
+            }
+        }
+
+        private static double dot(double[] a, double[] b) {
+            double sum = 0;
+            for (int j = 0; j < a.length; j++) {
+                sum += a[j] * b[j];
+            }
+            return sum;
+        }
+
+        private static double power(double base, int exponent) {
+            double result = 1;
+            for (double b = base; exponent > 0; exponent >>= 1, b *= b) {
+                if ((exponent & 1) != 0) {
+                    result *= b;
+                }
+            }
+            return result;
+        }
+    }
+
+    public static final class Options {
+        public long cacheBytes = 64L << 20;  // kernel row cache, per model being trained
+        public double tolerance = 1e-3;      // stop once the maximal KKT violation is below this
+        public boolean shrinking = true;
+        public long maxIterations = 10_000_000;
+    }
+
+    private final Kernel kernel;
+    private final double C;
+
+    private double[][] supportVectors;
+    private double[] coefficients; // alpha_i * y_i of each support vector
+    private double bias;
+
+    public KernelSVM(Kernel kernel, double C) {
+        if (C <= 0) {
+            throw new IllegalArgumentException("C must be positive, got " + C);
+        }
+        this.kernel = kernel;
+        this.C = C;
+    }
+
+    // Train on X[rows] (labels -1/1); returns the number of SMO iterations
+    public long train(double[][] X, int[] y, int[] rows, Options options) {
+        long start = TRAIN_TIMER.start();
+        Solver solver = new Solver(X, y, rows, options);
+        long iterations = solver.solve();
+
+        // Support vectors in row order, whatever order the solver left its samples in
+        int[] positionOf = new int[rows.length];
+        int count = 0;
+        for (int t = 0; t < rows.length; t++) {
+            positionOf[solver.index[t]] = t;
+            if (solver.alpha[t] > 0) {
+                count++;
+            }
+        }
+        supportVectors = new double[count][];
+        coefficients = new double[count];
+        int s = 0;
+        for (int r = 0; r < rows.length; r++) {
+            int t = positionOf[r];
+            if (solver.alpha[t] > 0) {
+                supportVectors[s] = X[rows[r]].clone();
+                coefficients[s++] = solver.alpha[t] * solver.y[t];
+            }
+        }
+        bias = -solver.rho();
+        TRAIN_TIMER.stop(start);
+        return iterations;
+    }
+
+    public void train(double[][] X, int[] y, Options options) {
+        int[] rows = new int[X.length];
+        Arrays.setAll(rows, i -> i);
+        train(X, y, rows, options);
+    }
+
+    // sum over the support vectors of alpha_i y_i K(x_i, x), plus the bias
+    public double decision(double[] x) {
+        double sum = bias;
+        for (int s = 0; s < supportVectors.length; s++) {
+            sum += coefficients[s] * kernel.value(supportVectors[s], x);
+        }
+        return sum;
+    }
+
+    public int predict(double[] x) {
+        return decision(x) >= 0 ? 1 : -1;
+    }
+
+    // Accuracy on X[rows]
+    public double calculateAccuracy(double[][] X, int[] y, int[] rows) {
+        int correct = 0;
+        for (int row : rows) {
+            if (predict(X[row]) == y[row]) {
+                correct++;
+            }
+        }
+        return (double) correct / rows.length;
+    }
+
+    public int numSupportVectors() {
+        return supportVectors.length;
+    }
+
+    public int numFeatures() {
+        return supportVectors.length > 0 ? supportVectors[0].length : 0;
+    }
+
+    public Kernel getKernel() {
+        return kernel;
+    }
+
+    public double getC() {
+        return C;
+    }
+
+    // SMO over the training rows. All per-sample state is indexed by position in the active
+    // set order: positions [0, active) are still optimized, the rest are shrunk, and
+    // index[t] is the position of sample t in the rows it was built from.
+    private final class Solver implements KernelCache.RowSource {
+        private static final byte LOWER = 0, UPPER = 1, FREE = 2;
+        private static final double TAU = 1e-12;
+
+        final int n;
+        final double[][] x;
+        final byte[] y;
+        final double[] alpha;
+        final int[] index;
+        private final double[] G;    // gradient of the dual objective
+        private final double[] Gbar; // C times the sum of the Q columns of samples at the upper bound
+        private final double[] QD;   // diagonal of Q
+        private final byte[] status;
+        private final KernelCache cache;
+        private final Options options;
+        private int active;
+        private boolean unshrink;
+
+        Solver(double[][] X, int[] labels, int[] rows, Options options) {
+            n = rows.length;
+            x = new double[n][];
+            y = new byte[n];
+            alpha = new double[n];
+            index = new int[n];
+            G = new double[n];
+            Gbar = new double[n];
+            QD = new double[n];
+            status = new byte[n];
+            for (int t = 0; t < n; t++) {
+                x[t] = X[rows[t]];
+                y[t] = (byte) (labels[rows[t]] > 0 ? 1 : -1);
+                index[t] = t;
+                G[t] = -1; // alpha = 0, so the gradient is the linear term
+                QD[t] = kernel.value(x[t], x[t]);
+            }
+            EVALUATIONS.add(n);
+            this.options = options;
+            // At least two full rows, which one step needs
+            cache = new KernelCache(Math.max(options.cacheBytes / 4, 2L * n), this);
+            active = n;
+        }
+
+        @Override
+        public void fill(int i, float[] row, int from, int to) {
+            for (int j = from; j < to; j++) {
+                row[j] = (float) (y[i] * y[j] * kernel.value(x[i], x[j]));
+            }
+            EVALUATIONS.add(to - from);
+        }
+
+        long solve() {
+            long iterations = 0;
+            int counter = Math.min(n, 1000) + 1;
+            int[] pair = new int[2];
+            while (iterations < options.maxIterations) {
+                if (--counter == 0) {
+                    counter = Math.min(n, 1000);
+                    if (options.shrinking) {
+                        shrink();
+                    }
+                }
+                if (!selectWorkingSet(pair)) {
+                    // Optimal on the active set; check again over every sample
+                    reconstructGradient();
+                    active = n;
+                    if (!selectWorkingSet(pair)) {
+                        break;
+                    }
+                    counter = 1; // shrink again on the next iteration
+                }
+                iterations++;
+                update(pair[0], pair[1]);
+            }
+            if (iterations >= options.maxIterations) {
+                System.out.println("Warning: SMO stopped after " + iterations + " iterations without converging");
+            }
+            if (active < n) {
+                reconstructGradient();
+                active = n;
+            }
+            return iterations;
+        }
+
+        // Optimize alpha_i and alpha_j analytically, keeping sum y_t alpha_t = 0 and 0 <= alpha <= C
+        private void update(int i, int j) {
+            float[] Qi = cache.row(i, active);
+            float[] Qj = cache.row(j, active);
+            double oldAi = alpha[i];
+            double oldAj = alpha[j];
+            double ai = oldAi;
+            double aj = oldAj;
+
+            if (y[i] != y[j]) {
+                double quad = positive(QD[i] + QD[j] + 2 * Qi[j]);
+                double delta = (-G[i] - G[j]) / quad;
+                double diff = ai - aj;
+                ai += delta;
+                aj += delta;
+                if (diff > 0) {
+                    if (aj < 0) {
+                        aj = 0;
+                        ai = diff;
+                    }
+                } else if (ai < 0) {
+                    ai = 0;
+                    aj = -diff;
+                }
+                if (diff > 0) {
+                    if (ai > C) {
+                        ai = C;
+                        aj = C - diff;
+                    }
+                } else if (aj > C) {
+                    aj = C;
+                    ai = C + diff;
+                }
+            } else {
+                double quad = positive(QD[i] + QD[j] - 2 * Qi[j]);
+                double delta = (G[i] - G[j]) / quad;
+                double sum = ai + aj;
+                ai -= delta;
+                aj += delta;
+                if (sum > C) {
+                    if (ai > C) {
+                        ai = C;
+                        aj = sum - C;
+                    }
+                    if (aj > C) {
+                        aj = C;
+                        ai = sum - C;
+                    }
+                } else {
+                    if (aj < 0) {
+                        aj = 0;
+                        ai = sum;
+                    }
+                    if (ai < 0) {
+                        ai = 0;
+                        aj = sum;
+                    }
+                }
+            }
+            alpha[i] = ai;
+            alpha[j] = aj;
+
+            double deltaI = ai - oldAi;
+            double deltaJ = aj - oldAj;
+            for (int t = 0; t < active; t++) {
+                G[t] += Qi[t] * deltaI + Qj[t] * deltaJ;
+            }
+
+            // Keep Gbar in step for the samples that moved onto or off the upper bound
+            updateStatus(i);
+            updateStatus(j);
+        }
+
+        private void updateStatus(int i) {
+            boolean wasUpper = status[i] == UPPER;
+            status[i] = alpha[i] >= C ? UPPER : alpha[i] <= 0 ? LOWER : FREE;
+            if (wasUpper != (status[i] == UPPER)) {
+                float[] Qi = cache.row(i, n);
+                double sign = wasUpper ? -C : C;
+                for (int t = 0; t < n; t++) {
+                    Gbar[t] += sign * Qi[t];
+                }
+            }
+        }
+
+        // Maximal violating i, then the j that decreases the objective most together with it
+        private boolean selectWorkingSet(int[] pair) {
+            double Gmax = Double.NEGATIVE_INFINITY;
+            int i = -1;
+            for (int t = 0; t < active; t++) {
+                if (y[t] == 1) {
+                    if (status[t] != UPPER && -G[t] >= Gmax) {
+                        Gmax = -G[t];
+                        i = t;
+                    }
+                } else if (status[t] != LOWER && G[t] >= Gmax) {
+                    Gmax = G[t];
+                    i = t;
+                }
+            }
+            if (i < 0) {
+                return false;
+            }
+
+            float[] Qi = cache.row(i, active);
+            double Gmax2 = Double.NEGATIVE_INFINITY;
+            double bestObjective = Double.POSITIVE_INFINITY;
+            int j = -1;
+            for (int t = 0; t < active; t++) {
+                double gradientDiff;
+                double quad;
+                if (y[t] == 1) {
+                    if (status[t] == LOWER) {
+                        continue;
+                    }
+                    Gmax2 = Math.max(Gmax2, G[t]);
+                    gradientDiff = Gmax + G[t];
+                    quad = QD[i] + QD[t] - 2.0 * y[i] * Qi[t];
+                } else {
+                    if (status[t] == UPPER) {
+                        continue;
+                    }
+                    Gmax2 = Math.max(Gmax2, -G[t]);
+                    gradientDiff = Gmax - G[t];
+                    quad = QD[i] + QD[t] + 2.0 * y[i] * Qi[t];
+                }
+                if (gradientDiff > 0) {
+                    double objective = -(gradientDiff * gradientDiff) / positive(quad);
+                    if (objective <= bestObjective) {
+                        bestObjective = objective;
+                        j = t;
+                    }
+                }
+            }
+            if (Gmax + Gmax2 < options.tolerance || j < 0) {
+                return false;
+            }
+            pair[0] = i;
+            pair[1] = j;
+            return true;
+        }
+
+        // Move samples at a bound whose gradient says they will stay there past the active end
+        private void shrink() {
+            double Gmax1 = Double.NEGATIVE_INFINITY; // max over I_up of -y G
+            double Gmax2 = Double.NEGATIVE_INFINITY; // max over I_low of y G
+            for (int t = 0; t < active; t++) {
+                if (y[t] == 1) {
+                    if (status[t] != UPPER) {
+                        Gmax1 = Math.max(Gmax1, -G[t]);
+                    }
+                    if (status[t] != LOWER) {
+                        Gmax2 = Math.max(Gmax2, G[t]);
+                    }
+                } else {
+                    if (status[t] != UPPER) {
+                        Gmax2 = Math.max(Gmax2, -G[t]);
+                    }
+                    if (status[t] != LOWER) {
+                        Gmax1 = Math.max(Gmax1, G[t]);
+                    }
+                }
+            }
+            // Close to optimal: bring everything back once, so the last steps see every sample
+            if (!unshrink && Gmax1 + Gmax2 <= options.tolerance * 10) {
+                unshrink = true;
+                reconstructGradient();
+                active = n;
+            }
+            for (int t = 0; t < active; t++) {
+                if (shrinkable(t, Gmax1, Gmax2)) {
+                    active--;
+                    while (active > t) {
+                        if (!shrinkable(active, Gmax1, Gmax2)) {
+                            swap(t, active);
+                            break;
+                        }
+                        active--;
+                    }
+                }
+            }
+        }
+
+        private boolean shrinkable(int t, double Gmax1, double Gmax2) {
+            if (status[t] == UPPER) {
+                return y[t] == 1 ? -G[t] > Gmax1 : -G[t] > Gmax2;
+            }
+            if (status[t] == LOWER) {
+                return y[t] == 1 ? G[t] > Gmax2 : G[t] > Gmax1;
+            }
+            return false;
+        }
+
+        // Gradient of the shrunk samples from Gbar plus the free samples' contributions
+        private void reconstructGradient() {
+            if (active == n) {
+                return;
+            }
+            int free = 0;
+            for (int t = 0; t < active; t++) {
+                if (status[t] == FREE) {
+                    free++;
+                }
+            }
+            for (int t = active; t < n; t++) {
+                G[t] = Gbar[t] - 1;
+            }
+            // Read whichever rows are shorter: shrunk rows over the active part, or free rows in full
+            if ((long) free * n > 2L * active * (n - active)) {
+                for (int t = active; t < n; t++) {
+                    float[] Qt = cache.row(t, active);
+                    for (int s = 0; s < active; s++) {
+                        if (status[s] == FREE) {
+                            G[t] += alpha[s] * Qt[s];
+                        }
+                    }
+                }
+            } else {
+                for (int s = 0; s < active; s++) {
+                    if (status[s] == FREE) {
+                        float[] Qs = cache.row(s, n);
+                        for (int t = active; t < n; t++) {
+                            G[t] += alpha[s] * Qs[t];
+                        }
+                    }
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            cache.swap(a, b);
+            double[] xa = x[a];
+            x[a] = x[b];
+            x[b] = xa;
+            byte ya = y[a];
+            y[a] = y[b];
+            y[b] = ya;
+            byte sa = status[a];
+            status[a] = status[b];
+            status[b] = sa;
+            int ia = index[a];
+            index[a] = index[b];
+            index[b] = ia;
+            swap(alpha, a, b);
+            swap(G, a, b);
+            swap(Gbar, a, b);
+            swap(QD, a, b);
+        }
+
+        // Offset of the decision function: the mean y G over free samples, else the middle of the feasible range
+        double rho() {
+            int free = 0;
+            double sumFree = 0;
+            double upper = Double.POSITIVE_INFINITY;
+            double lower = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < n; t++) {
+                double yG = y[t] * G[t];
+                if (status[t] == UPPER) {
+                    if (y[t] == -1) {
+                        upper = Math.min(upper, yG);
+                    } else {
+                        lower = Math.max(lower, yG);
+                    }
+                } else if (status[t] == LOWER) {
+                    if (y[t] == 1) {
+                        upper = Math.min(upper, yG);
+                    } else {
+                        lower = Math.max(lower, yG);
+                    }
+                } else {
+                    free++;
+                    sumFree += yG;
+                }
+            }
+            return free > 0 ? sumFree / free : (upper + lower) / 2;
+        }
+
+        private double positive(double quad) {
+            return quad > 0 ? quad : TAU;
+        }
+
+        private void swap(double[] values, int a, int b) {
+            double value = values[a];
+            values[a] = values[b];
+            values[b] = value;
+        }
+    }
+
+    // Rows of Q = y_i y_j K(x_i, x_j), least recently used evicted first once the budget is
+    // spent. A row is computed up to the length asked for (the active set) and extended when a
+    // longer prefix is needed; it holds floats, as LIBSVM does, to fit twice as many rows.
+    private static final class KernelCache {
+
+        interface RowSource {
+            // Entries [from, to) of row i
+            void fill(int i, float[] row, int from, int to);
+        }
+
+        private static final class Row {
+            float[] data = new float[0];
+            int length; // entries computed
+        }
+
+        private final long budget; // in floats
+        private final RowSource source;
+        private final LinkedHashMap<Integer, Row> rows = new LinkedHashMap<>(16, 0.75f, true);
+        private long used;
+
+        KernelCache(long budget, RowSource source) {
+            this.budget = budget;
+            this.source = source;
+        }
+
+        // Row i with at least its first length entries computed
+        float[] row(int i, int length) {
+            Row row = rows.get(i);
+            if (row != null && row.length >= length) {
+                CACHE_HITS.increment();
+                return row.data;
+            }
+            CACHE_MISSES.increment();
+            if (row == null) {
+                row = new Row();
+                rows.put(i, row);
+            }
+            if (row.data.length < length) {
+                used -= row.data.length;
+                evictFor(length, i);
+                row.data = Arrays.copyOf(row.data, length);
+                used += length;
+            }
+            source.fill(i, row.data, row.length, length);
+            row.length = length;
+            return row.data;
+        }
+
+        // Least recently used rows out, other than keep, until size more floats fit
+        private void evictFor(long size, int keep) {
+            Iterator<Map.Entry<Integer, Row>> eldest = rows.entrySet().iterator();
+            while (used + size > budget && eldest.hasNext()) {
+                Map.Entry<Integer, Row> entry = eldest.next();
+                if (entry.getKey() != keep) {
+                    used -= entry.getValue().data.length;
+                    eldest.remove();
+                }
+            }
+        }
+
+        // Samples a and b trade places in the solver's order: move their rows, and swap their
+        // entries in every row. A row computed past one of them but not the other is cut back.
+        void swap(int a, int b) {
+            Row rowA = rows.remove(a);
+            Row rowB = rows.remove(b);
+            if (rowA != null) {
+                rows.put(b, rowA);
+            }
+            if (rowB != null) {
+                rows.put(a, rowB);
+            }
+            int low = Math.min(a, b);
+            int high = Math.max(a, b);
+            for (Row row : rows.values()) {
+                if (row.length > high) {
+                    float value = row.data[a];
+                    row.data[a] = row.data[b];
+                    row.data[b] = value;
+                } else if (row.length > low) {
+                    row.length = low;
+                }
+            }
+        }
+    }
+
+    // Model file layout (big-endian): int magic 'KSVM', int format version, byte kernel type,
+    // double gamma, double coef0, int degree, double C, int support vector count,
+    // int feature count, per support vector its coefficient then its features, double bias
+    private static final int MODEL_MAGIC = 0x4B53564D; // "KSVM"
+    private static final int MODEL_VERSION = 1;
+
+    public void save(String filePath) throws IOException {
+        if (supportVectors == null) {
+            throw new IllegalStateException("Model has not been trained");
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeInt(MODEL_MAGIC);
+            out.writeInt(MODEL_VERSION);
+            out.writeByte(kernel.type.ordinal());
+            out.writeDouble(kernel.gamma);
+            out.writeDouble(kernel.coef0);
+            out.writeInt(kernel.degree);
+            out.writeDouble(C);
+            out.writeInt(supportVectors.length);
+            out.writeInt(numFeatures());
+            for (int s = 0; s < supportVectors.length; s++) {
+                out.writeDouble(coefficients[s]);
+                for (double value : supportVectors[s]) {
+                    out.writeDouble(value);
+                }
+            }
+            out.writeDouble(bias);
+        }
+    }
+
+    public static KernelSVM load(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (in.readInt() != MODEL_MAGIC) {
+                throw new IOException(filePath + " is not a kernel SVM model file");
+            }
+            int version = in.readInt();
+            if (version != MODEL_VERSION) {
+                throw new IOException("Unsupported model version " + version + " in " + filePath);
+            }
+            int type = in.readByte();
+            if (type < 0 || type >= KernelType.values().length) {
+                throw new IOException("Unknown kernel type " + type + " in " + filePath);
+            }
+            Kernel kernel = new Kernel(KernelType.values()[type], in.readDouble(), in.readDouble(), in.readInt());
+            KernelSVM model = new KernelSVM(kernel, in.readDouble());
+            int count = in.readInt();
+            int features = in.readInt();
+            model.supportVectors = new double[count][features];
+            model.coefficients = new double[count];
+            for (int s = 0; s < count; s++) {
+                model.coefficients[s] = in.readDouble();
+                for (int j = 0; j < features; j++) {
+                    model.supportVectors[s][j] = in.readDouble();
+                }
+            }
+            model.bias = in.readDouble();
+            return model;
+        }
+    }
+
+    // Model selection as SVMTest.selectAndTrain does it, over C x gamma: stratified split,
+    // k-fold cross-validation of every configuration on the training split with all fold jobs
+    // on one pool, then the best configuration trained on the whole training split and checked
+    // on the test split. Each job has its own kernel cache of options.cacheBytes.
+    public static KernelSVM selectAndTrain(double[][] X, int[] y, Kernel kernel, double[] Cs, double[] gammas,
+                                           Options options, double trainFraction, int k, long seed, int threads) {
+        DataSplit split = DataSplit.stratified(y, trainFraction, seed);
+        CrossValidation.Fold[] folds = CrossValidation.folds(y, split.trainRows, k, true, seed);
+
+        double bestC = Cs[0];
+        double bestGamma = gammas[0];
+        double bestAccuracy = -1;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Double>> jobs = new ArrayList<>();
+            for (double C : Cs) {
+                for (double gamma : gammas) {
+                    for (CrossValidation.Fold fold : folds) {
+                        jobs.add(pool.submit(() -> {
+                            KernelSVM model = new KernelSVM(kernel.withGamma(gamma), C);
+                            model.train(X, y, fold.trainRows, options);
+                            return model.calculateAccuracy(X, y, fold.testRows);
+                        }));
+                    }
+                }
+            }
+            int job = 0;
+            for (double C : Cs) {
+                for (double gamma : gammas) {
+                    double sum = 0;
+                    for (int f = 0; f < folds.length; f++) {
+                        sum += jobs.get(job++).get();
+                    }
+                    if (sum / folds.length > bestAccuracy) {
+                        bestAccuracy = sum / folds.length;
+                        bestC = C;
+                        bestGamma = gamma;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cross-validation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cross-validation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("Best C: " + bestC);
+        System.out.println("Best Kernel: " + kernel.withGamma(bestGamma));
+        System.out.printf("Cross-validation Accuracy: %.2f%%%n", bestAccuracy * 100);
+
+        KernelSVM bestModel = new KernelSVM(kernel.withGamma(bestGamma), bestC);
+        long iterations = bestModel.train(X, y, split.trainRows, options);
+        System.out.println("Best model converged after " + iterations + " iterations with "
+                + bestModel.numSupportVectors() + " support vectors");
+        System.out.println("Best Model Accuracy: " + bestModel.calculateAccuracy(X, y, split.testRows) * 100 + "%");
+        return bestModel;
+    }
+
+    // Main method: rbf (default) or polynomial, then --no-shrinking and/or a cache size in MB
+    public static void main(String[] args) {
+        String csvFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2.csv"; // Written by DataNormalization
+        String modelFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/kernel_model.bin";
+
+        Options options = new Options();
+        boolean polynomial = false;
+        for (String arg : args) {
+            if (arg.equals("polynomial")) {
+                polynomial = true;
+            } else if (arg.equals("--no-shrinking")) {
+                options.shrinking = false;
+            } else if (!arg.equals("rbf")) {
+                try {
+                    options.cacheBytes = Long.parseLong(arg) << 20;
+                } catch (NumberFormatException e) {
+                    System.err.println("Unknown argument " + arg);
+                    return;
+                }
+            }
+        }
+
+        List<double[]> featureList = new ArrayList<>();
+        List<Integer> labelList = new ArrayList<>();
+        try (FeatureRows rows = FeatureRows.open(csvFile)) {
+            int featureCount = rows.features();
+            while (rows.next()) {
+                double[] features = new double[featureCount];
+                rows.features(features);
+                labelList.add(rows.label() == 0 ? -1 : 1); // Convert 0/1 to -1/1
+                featureList.add(features);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading features: " + e.getMessage());
+            return;
+        }
+        double[][] X = featureList.toArray(new double[0][]);
+        int[] y = labelList.stream().mapToInt(i -> i).toArray();
+        if (X.length == 0) {
+            System.err.println("No rows in " + csvFile);
+            return;
+        }
+
+        // gamma around 1 / features, the usual starting point for standardized inputs
+        Kernel kernel = polynomial ? Kernel.polynomial(1.0 / X[0].length, 1, 3) : Kernel.rbf(1.0 / X[0].length);
+        double[] Cs = GridSearch.logScale(0.01, 100, 10);
+        // A cubic in gamma x.y grows fast with gamma, and SMO crawls on the badly conditioned kernel
+        double[] gammas = polynomial ? GridSearch.logScale(0.01, 1, 10) : GridSearch.logScale(0.01, 10, 10);
+        int threads = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        // 80-20 split and 5 folds, fixed seed for reproducibility
+        KernelSVM bestModel = selectAndTrain(X, y, kernel, Cs, gammas, options, 0.8, 5, 42, threads);
+        long hits = CACHE_HITS.get();
+        long misses = CACHE_MISSES.get();
+        System.out.printf("Took %.1f ms, %d kernel evaluations, kernel row cache hit rate %.1f%%%n",
+                (System.nanoTime() - start) / 1e6, EVALUATIONS.get(), 100.0 * hits / Math.max(1, hits + misses));
+
+        try {
+            bestModel.save(modelFile);
+            System.out.println("Model saved to: " + modelFile);
+        } catch (IOException e) {
+            System.err.println("Error saving model: " + e.getMessage());
+        }
+
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("Enter " + X[0].length + " features for prediction (space-separated): ");
+        double[] userFeatures = new double[X[0].length];
+        for (int i = 0; i < X[0].length; i++) {
+            userFeatures[i] = scanner.nextDouble();
+        }
+        int prediction = bestModel.predict(userFeatures);
+        System.out.println("Prediction: " + ((prediction == 1) ? "Real" : "Fake"));
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Read-only word list (stopwords, adjectives) that can be probed with a slice of a review.
+// Words are stored back to back in one char array, and an open-addressed table of
+// (hash, word index) pairs points into it. Matching folds ASCII case on the probe side,
+// so a lookup needs no lowercased copy of the token and allocates nothing.
+public final class Lexicon {
+
+    private final char[] pool;     // all words back to back, lowercased
+    private final int[] offsets;   // word i occupies pool[offsets[i], offsets[i + 1])
+    private final int[] slots;     // pairs of (hash, word index + 1); 0 marks an empty slot
+    private final int mask;
+    private final int size;
+
+    private Lexicon(List<String> words) {
+        int chars = 0;
+        for (String word : words) {
+            chars += word.length();
+        }
+        pool = new char[chars];
+        offsets = new int[words.size() + 1];
+        int capacity = Integer.highestOneBit(Math.max(words.size(), 8) * 2) << 1; // at most half full
+        slots = new int[capacity * 2];
+        mask = capacity - 1;
+
+        int count = 0;
+        for (String word : words) {
+            int start = offsets[count];
+            word.getChars(0, word.length(), pool, start);
+            int end = start + word.length();
+            if (contains(pool, start, end)) {
+                continue; // duplicate line in the word list
+            }
+            offsets[count + 1] = end;
+            int hash = hash(pool, start, end);
+            int slot = mix(hash) & mask;
+            while (slots[slot * 2 + 1] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot * 2] = hash;
+            slots[slot * 2 + 1] = count + 1;
+            count++;
+        }
+        size = count;
+    }
+
+    public static Lexicon of(Collection<String> words) {
+        List<String> entries = new ArrayList<>(words.size());
+        for (String word : words) {
+            addEntry(entries, word);
+        }
+        return new Lexicon(entries);
+    }
+
+    // Load one word per line (trimmed, lowercased)
+    public static Lexicon load(String filePath) {
+        List<String> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                addEntry(entries, line);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading word list " + filePath + ": " + e.getMessage());
+        }
+        return new Lexicon(entries);
+    }
+
+    private static void addEntry(List<String> entries, String word) {
+        word = word.trim().toLowerCase();
+        if (!word.isEmpty()) {
+            entries.add(word);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(CharSequence word) {
+        char[] text = word.toString().toCharArray();
+        return contains(text, 0, text.length);
+    }
+
+    // Case-insensitive (ASCII) lookup of text[start, end)
+    public boolean contains(char[] text, int start, int end) {
+        return contains(text, start, end, hash(text, start, end));
+    }
+
+    // Lookup with a hash the caller already computed with hash()'s formula while scanning the token
+    public boolean contains(char[] text, int start, int end, int hash) {
+        int length = end - start;
+        int slot = mix(hash) & mask;
+        int word;
+        while ((word = slots[slot * 2 + 1]) != 0) {
+            if (slots[slot * 2] == hash) {
+                int wordStart = offsets[word - 1];
+                if (offsets[word] - wordStart == length && matches(text, start, wordStart, length)) {
+                    return true;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    // Order-independent 64-bit digest of the word set, so results computed with one word list
+    // can be recognized as stale once the list changes
+    public long fingerprint() {
+        long sum = size;
+        for (int word = 0; word < size; word++) {
+            long hash = 0xcbf29ce484222325L; // FNV-1a
+            for (int k = offsets[word]; k < offsets[word + 1]; k++) {
+                hash = (hash ^ pool[k]) * 0x100000001b3L;
+            }
+            sum += mix64(hash);
+        }
+        return sum;
+    }
+
+    // Polynomial hash (same as String.hashCode) of the ASCII-lowercased characters
+    public static int hash(char[] text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toLower(text[i]);
+        }
+        return hash;
+    }
+
+    static char toLower(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private boolean matches(char[] text, int start, int wordStart, int length) {
+        for (int k = 0; k < length; k++) {
+            if (toLower(text[start + k]) != pool[wordStart + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // MurmurHash3 finalizer: every input bit affects every output bit
+    static long mix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
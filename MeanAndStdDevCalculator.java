@@ -1,63 +1,217 @@
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class MeanAndStdDevCalculator {
 
+    // Rows per unit of parallel work
+    private static final int CHUNK_SIZE = 1 << 16;
+    // Histogram resolution for approximate quantiles: error is at most (max - min) / HISTOGRAM_BINS
+    private static final int HISTOGRAM_BINS = 4096;
+    private static final double[] QUANTILES = {0.25, 0.5, 0.75, 0.95};
+
+    // Per-column results
+    public static class ColumnProfile {
+        public final String name;
+        public final RunningStats stats;
+        public final double[] quantiles; // values at QUANTILES
+
+        ColumnProfile(String name, RunningStats stats, double[] quantiles) {
+            this.name = name;
+            this.stats = stats;
+            this.quantiles = quantiles;
+        }
+    }
+
     public static void calculateMeanAndStdDev(String filePath) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(filePath));
-        
-        String headerLine = reader.readLine(); // Read the header line
-        String[] headers = headerLine.split(","); // Split headers
-        
-        // Ignore the first column
-        List<String> relevantHeaders = new ArrayList<>(Arrays.asList(headers).subList(1, headers.length));
-
-        List<List<Double>> columnData = new ArrayList<>();
-        for (int i = 1; i < headers.length; i++) { // Create a list for each column (ignoring the first)
-            columnData.add(new ArrayList<>());
+        List<ColumnProfile> profiles = profile(filePath);
+
+        System.out.println("Column-wise Mean and Standard Deviation:");
+        for (ColumnProfile column : profiles) {
+            RunningStats stats = column.stats;
+            System.out.printf("%s -> Mean: %.4f, Std Dev: %.4f, Min: %.4f, Max: %.4f, P25: %.4f, P50: %.4f, P75: %.4f, P95: %.4f%n",
+                    column.name, stats.mean(0), stats.stdDev(0), stats.min(0), stats.max(0),
+                    column.quantiles[0], column.quantiles[1], column.quantiles[2], column.quantiles[3]);
         }
+    }
 
-        String line;
-        // Read data rows
-        while ((line = reader.readLine()) != null) {
-            String[] values = line.split(",");
-            for (int i = 1; i < values.length; i++) { // Start from index 1 to ignore the first column
-                columnData.get(i - 1).add(Double.parseDouble(values[i]));
+    // Read the file into primitive column buffers, then compute every column's
+    // statistics in parallel over row chunks. A ColumnFile is copied column by column from
+    // its mapping instead of parsed. A shard spec (see Shards) is profiled as one table: the
+    // shards are read concurrently and their columns joined in shard order, so the result is
+    // the same as for the concatenated file, quantiles included.
+    public static List<ColumnProfile> profile(String filePath) throws IOException {
+        if (!Shards.isSharded(filePath)) {
+            Table table = load(filePath);
+            return profile(table.headers, table.columns);
+        }
+        List<Path> shards = Shards.resolve(filePath);
+        List<Table> tables = Shards.map(shards, Runtime.getRuntime().availableProcessors(),
+                shard -> load(shard.toString()));
+        Table first = tables.get(0);
+        DoubleColumn[] columns = new DoubleColumn[first.columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new DoubleColumn();
+        }
+        for (int s = 0; s < tables.size(); s++) {
+            if (!Arrays.equals(tables.get(s).headers, first.headers)) {
+                throw new IOException("Shard " + shards.get(s) + " has other columns than " + shards.get(0));
+            }
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].addAll(tables.get(s).columns[i]);
             }
         }
-        reader.close();
+        return profile(first.headers, columns);
+    }
 
-        // Calculate mean and standard deviation for each column
-        System.out.println("Column-wise Mean and Standard Deviation:");
-        for (int i = 0; i < columnData.size(); i++) {
-            double mean = calculateMean(columnData.get(i));
-            double stdDev = calculateStandardDeviation(columnData.get(i), mean);
-            System.out.printf("%s -> Mean: %.4f, Std Dev: %.4f%n", relevantHeaders.get(i), mean, stdDev);
+    // Header and feature columns of one file
+    private static final class Table {
+        final String[] headers;
+        final DoubleColumn[] columns;
+
+        Table(String[] headers, DoubleColumn[] columns) {
+            this.headers = headers;
+            this.columns = columns;
+        }
+    }
+
+    private static Table load(String filePath) throws IOException {
+        String[] headers;
+        DoubleColumn[] columns;
+        if (ColumnFile.isColumnFile(filePath)) {
+            try (ColumnFile table = ColumnFile.open(filePath)) {
+                headers = new String[table.columns()];
+                columns = new DoubleColumn[headers.length - 1];
+                for (int i = 0; i < headers.length; i++) {
+                    headers[i] = table.name(i);
+                    if (i > 0) {
+                        columns[i - 1] = new DoubleColumn();
+                        columns[i - 1].values = table.column(i);
+                        columns[i - 1].size = table.rows();
+                    }
+                }
+            }
+            return new Table(headers, columns);
+        }
+        try (CsvReader reader = CsvReader.open(filePath)) {
+            reader.next(); // Read the header line
+            headers = new String[reader.fieldCount()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = reader.stringField(i);
+            }
+
+            // Ignore the first column
+            columns = new DoubleColumn[headers.length - 1];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new DoubleColumn();
+            }
+
+            // Read data rows
+            while (reader.next()) {
+                for (int i = 1; i < reader.fieldCount(); i++) { // Start from index 1 to ignore the first column
+                    columns[i - 1].add(reader.doubleField(i));
+                }
+            }
+        }
+
+        return new Table(headers, columns);
+    }
+
+    private static List<ColumnProfile> profile(String[] headers, DoubleColumn[] data) {
+        // Columns in parallel, and each column's chunks in parallel inside that
+        return IntStream.range(0, data.length).parallel()
+                .mapToObj(i -> {
+                    RunningStats stats = columnStats(data[i]);
+                    double[] quantiles = approximateQuantiles(data[i], stats.min(0), stats.max(0));
+                    return new ColumnProfile(headers[i + 1], stats, quantiles);
+                })
+                .collect(java.util.stream.Collectors.toList());
+    }
+
+    private static int chunks(DoubleColumn column) {
+        return Math.max(1, (column.size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    // Welford per chunk in parallel, merged in chunk order so the result is deterministic
+    private static RunningStats columnStats(DoubleColumn column) {
+        RunningStats[] partials = IntStream.range(0, chunks(column)).parallel()
+                .mapToObj(chunk -> RunningStats.ofColumn(column.values, chunk * CHUNK_SIZE,
+                        Math.min(column.size, (chunk + 1) * CHUNK_SIZE)))
+                .toArray(RunningStats[]::new);
+        RunningStats total = new RunningStats(1);
+        for (RunningStats partial : partials) {
+            total.merge(partial);
         }
+        return total;
     }
 
-    // Method to calculate the mean of a list of numbers
-    private static double calculateMean(List<Double> data) {
-        double sum = 0.0;
-        for (double value : data) {
-            sum += value;
+    // Fixed-bin histogram over [min, max] built per chunk in parallel, then summed;
+    // each quantile is interpolated linearly inside its bin
+    private static double[] approximateQuantiles(DoubleColumn column, double min, double max) {
+        double[] result = new double[QUANTILES.length];
+        if (column.size == 0 || !(max > min)) {
+            Arrays.fill(result, column.size == 0 ? Double.NaN : min);
+            return result;
+        }
+        double scale = HISTOGRAM_BINS / (max - min);
+        long[] histogram = IntStream.range(0, chunks(column)).parallel()
+                .mapToObj(chunk -> {
+                    long[] bins = new long[HISTOGRAM_BINS];
+                    int end = Math.min(column.size, (chunk + 1) * CHUNK_SIZE);
+                    for (int r = chunk * CHUNK_SIZE; r < end; r++) {
+                        int bin = (int) ((column.values[r] - min) * scale);
+                        bins[Math.min(Math.max(bin, 0), HISTOGRAM_BINS - 1)]++;
+                    }
+                    return bins;
+                })
+                .reduce(new long[HISTOGRAM_BINS], (a, b) -> {
+                    long[] sum = a.clone();
+                    for (int k = 0; k < sum.length; k++) {
+                        sum[k] += b[k];
+                    }
+                    return sum;
+                });
+
+        long seen = 0;
+        int q = 0;
+        for (int bin = 0; bin < HISTOGRAM_BINS && q < QUANTILES.length; bin++) {
+            long next = seen + histogram[bin];
+            while (q < QUANTILES.length && next >= QUANTILES[q] * column.size) {
+                double within = histogram[bin] == 0 ? 0 : (QUANTILES[q] * column.size - seen) / histogram[bin];
+                result[q] = min + (bin + within) / scale;
+                q++;
+            }
+            seen = next;
         }
-        return sum / data.size();
+        return result;
     }
 
-    // Method to calculate the standard deviation of a list of numbers
-    private static double calculateStandardDeviation(List<Double> data, double mean) {
-        double variance = 0.0;
-        for (double value : data) {
-            variance += Math.pow(value - mean, 2);
+    // Growable primitive buffer, one per column
+    private static final class DoubleColumn {
+        double[] values = new double[1024];
+        int size;
+
+        void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length + (values.length >> 1));
+            }
+            values[size++] = value;
+        }
+
+        void addAll(DoubleColumn other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, values.length + (values.length >> 1)));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
         }
-        variance /= data.size(); // Use (data.size() - 1) for sample standard deviation
-        return Math.sqrt(variance);
     }
 
     public static void main(String[] args) {
         try {
-            String filePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1.csv"; // Path to your CSV file
+            // Path to your CSV file, or a directory, glob or manifest of shards
+            String filePath = args.length > 0 ? args[0] : "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1.csv";
             calculateMeanAndStdDev(filePath);
         } catch (IOException e) {
             System.err.println("Error reading the file: " + e.getMessage());
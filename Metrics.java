@@ -0,0 +1,236 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters and latency histograms for the feature pipeline and the SVM.
+// Every value is a LongAdder (striped per thread under contention), so featurization workers
+// record without contending on a shared cache line. Look a metric up once and keep it in a
+// static final field; recording is then an add, plus two System.nanoTime() calls for a timer.
+//
+//   private static final Metrics.Timer PARSE = Metrics.timer("csv.record");
+//   long start = PARSE.start();
+//   ...
+//   PARSE.stop(start);
+//
+// Export is the Prometheus text format: writeTo(), dump() to a file, or serve() on a local
+// port. -Dmetrics.file=<path> dumps when the JVM exits, -Dmetrics.port=<port> serves
+// /metrics while it runs, and -Dmetrics=false turns timers into no-ops.
+public final class Metrics {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("metrics"));
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+
+    static {
+        String file = System.getProperty("metrics.file");
+        if (file != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    dump(file);
+                } catch (IOException e) {
+                    System.err.println("Error writing metrics to " + file + ": " + e.getMessage());
+                }
+            }));
+        }
+        String port = System.getProperty("metrics.port");
+        if (port != null) {
+            try {
+                serve(Integer.parseInt(port));
+            } catch (IOException e) {
+                System.err.println("Error serving metrics on port " + port + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    // Latency histogram in nanoseconds. Values below 8 get their own bucket; above that each
+    // power of two is split into 4 buckets, so a percentile is off by at most 25%.
+    public static final class Timer {
+        private static final int LINEAR = 8;
+        private static final int BUCKETS = LINEAR + (63 - 3) * 4;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Timer() {
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets[b] = new LongAdder();
+            }
+        }
+
+        public long start() {
+            return ENABLED ? System.nanoTime() : 0;
+        }
+
+        public void stop(long start) {
+            if (ENABLED) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        public void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            buckets[bucket(nanos)].increment();
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long totalNanos() {
+            return sum.sum();
+        }
+
+        public long maxNanos() {
+            return max.get();
+        }
+
+        // Upper bound of the bucket holding the q-th quantile (0 < q <= 1)
+        public long percentileNanos(double q) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                counts[b] = buckets[b].sum();
+                total += counts[b];
+            }
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts[b];
+                if (seen >= rank && counts[b] > 0) {
+                    return Math.min(upperBound(b), maxNanos());
+                }
+            }
+            return 0;
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < LINEAR) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos); // >= 3
+            int sub = (int) (nanos >>> (exponent - 2)) & 3;
+            return LINEAR + (exponent - 3) * 4 + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < LINEAR) {
+                return bucket;
+            }
+            int exponent = 3 + (bucket - LINEAR) / 4;
+            int sub = (bucket - LINEAR) % 4;
+            return ((4L + sub + 1) << (exponent - 2)) - 1;
+        }
+    }
+
+    // Prometheus text format: counters as <name>_total, timers as summaries in seconds
+    public static void writeTo(Writer out) throws IOException {
+        for (Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+            String name = metricName(entry.getKey()) + "_total";
+            out.write("# TYPE " + name + " counter\n");
+            out.write(name + " " + entry.getValue().get() + "\n");
+        }
+        for (Map.Entry<String, Timer> entry : TIMERS.entrySet()) {
+            String name = metricName(entry.getKey()) + "_seconds";
+            Timer timer = entry.getValue();
+            out.write("# TYPE " + name + " summary\n");
+            for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                out.write(name + "{quantile=\"" + q + "\"} " + seconds(timer.percentileNanos(q)) + "\n");
+            }
+            out.write(name + "_sum " + seconds(timer.totalNanos()) + "\n");
+            out.write(name + "_count " + timer.count() + "\n");
+            out.write(name + "_max " + seconds(timer.maxNanos()) + "\n");
+        }
+    }
+
+    // Write all metrics to filePath (replaced atomically, so readers never see half a file)
+    public static void dump(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writeTo(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Serve GET /metrics on localhost:port. The server threads are daemons, so a batch job
+    // still exits when its main method returns.
+    public static HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/metrics", Metrics::handle);
+        // The dispatcher thread inherits the daemon flag of the thread that starts the server
+        Thread starter = new Thread(server::start, "metrics-server-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return server;
+    }
+
+    // Handler for a /metrics context on any HttpServer
+    public static void handle(HttpExchange exchange) throws IOException {
+        StringWriter text = new StringWriter();
+        writeTo(text);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(body);
+        }
+    }
+
+    private static String metricName(String name) {
+        return "critics_" + name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+// Hashing-trick bag of words: every unigram and bigram of a review's word tokens is hashed
+// straight to one of 2^bits feature indices, so there is no vocabulary to build, store or
+// ship with the model, and the feature space has a fixed width whatever the corpus.
+//
+// Tokens are the same as everywhere else in the pipeline: runs of [A-Za-z0-9_], ASCII
+// lowercased. Each n-gram also gets a sign from its hash, so the n-grams that collide in an
+// index tend to cancel instead of piling up. The counts of a review are scaled to unit L2
+// norm, which keeps SGD step sizes independent of review length.
+//
+// A hasher keeps scratch state between calls, so use one instance per thread.
+public class NgramHasher {
+
+    // 2^18 features: few collisions for a review corpus, 2 MB of SVM weights
+    public static final int DEFAULT_BITS = 18;
+
+    private static final long UNIGRAM_SEED = 0x9E3779B97F4A7C15L;
+    private static final long BIGRAM_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    private final int bits;
+
+    // Scratch: one code per n-gram occurrence, (index << 1) | negative
+    private int[] codes = new int[1024];
+
+    public NgramHasher(int bits) {
+        if (bits < 1 || bits > 30) {
+            throw new IllegalArgumentException("bits must be in [1, 30], got " + bits);
+        }
+        this.bits = bits;
+    }
+
+    public NgramHasher() {
+        this(DEFAULT_BITS);
+    }
+
+    public int dimension() {
+        return 1 << bits;
+    }
+
+    // Hashed, L2-normalized unigram and bigram counts of the review
+    public SparseVector hash(CharSequence review) {
+        int count = 0;
+        long previous = 0;
+        boolean hasPrevious = false;
+        long token = 0;
+        boolean inToken = false;
+        int length = review.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? review.charAt(i) : ' ';
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') {
+                if (!inToken) {
+                    token = 0xcbf29ce484222325L; // FNV-1a
+                    inToken = true;
+                }
+                token = (token ^ Lexicon.toLower(c)) * 0x100000001b3L;
+            } else if (inToken) {
+                inToken = false;
+                if (count + 2 > codes.length) {
+                    codes = Arrays.copyOf(codes, codes.length * 2);
+                }
+                codes[count++] = code(Lexicon.mix64(token + UNIGRAM_SEED));
+                if (hasPrevious) {
+                    codes[count++] = code(Lexicon.mix64(previous * 31 + token + BIGRAM_SEED));
+                }
+                previous = token;
+                hasPrevious = true;
+            }
+        }
+        return collect(count);
+    }
+
+    // Feature index from the top bits of the hash, sign from the lowest
+    private int code(long hash) {
+        return (int) (hash >>> (64 - bits)) << 1 | (int) (hash & 1);
+    }
+
+    // Sort the codes so equal indices are adjacent, sum their signs, drop zeros, normalize
+    private SparseVector collect(int count) {
+        Arrays.sort(codes, 0, count);
+        int[] indices = new int[count];
+        double[] values = new double[count];
+        int entries = 0;
+        double squares = 0;
+        int k = 0;
+        while (k < count) {
+            int index = codes[k] >>> 1;
+            int sum = 0;
+            for (; k < count && codes[k] >>> 1 == index; k++) {
+                sum += (codes[k] & 1) == 0 ? 1 : -1;
+            }
+            if (sum != 0) {
+                indices[entries] = index;
+                values[entries] = sum;
+                squares += (double) sum * sum;
+                entries++;
+            }
+        }
+        double scale = squares > 0 ? 1 / Math.sqrt(squares) : 0;
+        for (int e = 0; e < entries; e++) {
+            values[e] *= scale;
+        }
+        return new SparseVector(dimension(), Arrays.copyOf(indices, entries), Arrays.copyOf(values, entries));
+    }
+}
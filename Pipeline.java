@@ -0,0 +1,226 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+// Featurize -> standardize -> train in one JVM, driven by one config file, instead of running
+// index, DataNormalization and SVMTest one after another with their hardcoded paths. Feature
+// rows go from the featurization workers straight into memory; nothing is written between
+// stages and nothing is parsed back.
+//
+// When the scaler file already exists (and refitScaler is off), every row is standardized as
+// it comes out of featurization. Otherwise the statistics are accumulated on the way in and
+// the rows standardized in place once featurization is done, and the new scaler is saved.
+// Features are kept at full precision, where the file hand-off rounds them to %.2f/%.4f.
+//
+// Config (java.util.Properties; relative paths are resolved against the config's directory):
+//   input, adjectives, stopwords, scaler, model   required paths
+//   featureCache          FeatureCache file, empty for none
+//   refitScaler           fit a new scaler even if one exists (default false)
+//   threads               featurization and cross-validation threads (default: cores)
+//   trainFraction, folds, seed                    0.8, 5, 42
+//   learningRates, regularizationParams           from,to,factor of a log grid
+//                                                 (0.0001,1,10 and 0.001,10,10)
+//   maxEpochs, tolerance, patience, schedule      SVMTest.TrainingOptions
+public class Pipeline {
+
+    private final Config config;
+
+    public Pipeline(Config config) {
+        this.config = config;
+    }
+
+    // Typed view of the config file
+    public static final class Config {
+        private final Properties properties;
+        private final Path baseDirectory;
+
+        private Config(Properties properties, Path baseDirectory) {
+            this.properties = properties;
+            this.baseDirectory = baseDirectory;
+        }
+
+        public static Config load(String filePath) throws IOException {
+            Properties properties = new Properties();
+            try (Reader in = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+                properties.load(in);
+            }
+            Path parent = Paths.get(filePath).toAbsolutePath().getParent();
+            return new Config(properties, parent);
+        }
+
+        // Required path, relative to the config file's directory unless absolute
+        public String path(String key) {
+            String value = properties.getProperty(key, "").trim();
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Missing required config key " + key);
+            }
+            return baseDirectory.resolve(value).toString();
+        }
+
+        // Optional path, null when unset or empty
+        public String optionalPath(String key) {
+            String value = properties.getProperty(key, "").trim();
+            return value.isEmpty() ? null : baseDirectory.resolve(value).toString();
+        }
+
+        public String string(String key, String defaultValue) {
+            return properties.getProperty(key, defaultValue).trim();
+        }
+
+        public int integer(String key, int defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Config key " + key + " is not an integer: " + value);
+            }
+        }
+
+        public double number(String key, double defaultValue) {
+            String value = properties.getProperty(key);
+            try {
+                return value == null ? defaultValue : Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Config key " + key + " is not a number: " + value);
+            }
+        }
+
+        public boolean flag(String key, boolean defaultValue) {
+            String value = properties.getProperty(key);
+            return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+        }
+
+        // "from,to,factor" as GridSearch.logScale(from, to, factor)
+        public double[] logGrid(String key, String defaultValue) {
+            String value = string(key, defaultValue);
+            String[] parts = value.split(",");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Config key " + key + " must be from,to,factor: " + value);
+            }
+            try {
+                return GridSearch.logScale(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()),
+                        Double.parseDouble(parts[2].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Config key " + key + " must be from,to,factor: " + value);
+            }
+        }
+    }
+
+    // Feature rows collected in memory, label column split off and converted to -1/1
+    private static final class Rows implements index.RowSink<double[]> {
+        private final Scaler scaler;      // applied to every row as it arrives, if not null
+        private final RunningStats stats; // accumulated from the raw rows, if not null
+        final List<double[]> features = new ArrayList<>();
+        int[] labels = new int[1024];
+
+        Rows(Scaler scaler, RunningStats stats) {
+            this.scaler = scaler;
+            this.stats = stats;
+        }
+
+        @Override
+        public void write(double[] row) {
+            double[] values = new double[row.length - 1];
+            System.arraycopy(row, 1, values, 0, values.length);
+            if (stats != null) {
+                stats.add(values);
+            }
+            if (scaler != null) {
+                scaler.transform(values, values);
+            }
+            if (features.size() == labels.length) {
+                labels = Arrays.copyOf(labels, labels.length * 2);
+            }
+            labels[features.size()] = row[0] == 0 ? -1 : 1; // Convert 0/1 to -1/1
+            features.add(values);
+        }
+    }
+
+    // Run every stage; returns the trained model (also saved to the model path)
+    public SVMTest run() throws IOException {
+        int threads = config.integer("threads", Runtime.getRuntime().availableProcessors());
+        String scalerFile = config.path("scaler");
+        String[] featureNames = {"pausality", "lexical_density", "readability", "adjective_count"};
+
+        Lexicon adjectives = Lexicon.load(config.path("adjectives"));
+        Lexicon stopwords = Lexicon.load(config.path("stopwords"));
+
+        // Standardize on the fly when a compatible scaler exists
+        Scaler scaler = null;
+        if (!config.flag("refitScaler", false) && Files.exists(Paths.get(scalerFile))) {
+            scaler = Scaler.load(scalerFile);
+            for (int j = 0; scaler != null && j < featureNames.length; j++) {
+                if (scaler.features() != featureNames.length || !scaler.name(j).equals(featureNames[j])) {
+                    System.out.println("Scaler in " + scalerFile + " is for other features; refitting");
+                    scaler = null;
+                }
+            }
+        }
+        Rows rows = new Rows(scaler, scaler == null ? new RunningStats(featureNames.length) : null);
+
+        long start = System.nanoTime();
+        String cacheFile = config.optionalPath("featureCache");
+        FeatureCache cache = cacheFile == null ? null : index.openCache(cacheFile, stopwords, adjectives);
+        try {
+            index.featurizeInto(config.path("input"), adjectives, stopwords, threads, cache, rows);
+        } finally {
+            index.closeCache(cache);
+        }
+        System.out.printf("Featurized %d reviews in %.1f ms%s%n", rows.features.size(), millisSince(start),
+                scaler != null ? " (standardized with the saved scaler)" : "");
+        if (rows.features.isEmpty()) {
+            throw new IOException("No reviews in " + config.path("input"));
+        }
+
+        double[][] X = rows.features.toArray(new double[0][]);
+        int[] y = Arrays.copyOf(rows.labels, X.length);
+        if (scaler == null) {
+            start = System.nanoTime();
+            scaler = Scaler.fromStats(featureNames, rows.stats);
+            for (double[] row : X) {
+                scaler.transform(row, row);
+            }
+            scaler.save(scalerFile);
+            System.out.printf("Fitted and applied a new scaler in %.1f ms, saved to %s%n", millisSince(start), scalerFile);
+        }
+
+        SVMTest.TrainingOptions options = new SVMTest.TrainingOptions();
+        options.maxEpochs = config.integer("maxEpochs", options.maxEpochs);
+        options.tolerance = config.number("tolerance", options.tolerance);
+        options.patience = config.integer("patience", options.patience);
+        options.seed = config.integer("seed", 42);
+        options.schedule = SVMTest.Schedule.valueOf(config.string("schedule", options.schedule.name()));
+        options.batchSize = config.integer("batchSize", options.batchSize);
+
+        start = System.nanoTime();
+        SVMTest model = SVMTest.selectAndTrain(X, y,
+                config.logGrid("learningRates", "0.0001,1,10"),
+                config.logGrid("regularizationParams", "0.001,10,10"),
+                options, config.number("trainFraction", 0.8), config.integer("folds", 5), options.seed, threads);
+        System.out.printf("Model selection and training took %.1f ms%n", millisSince(start));
+
+        String modelFile = config.path("model");
+        model.save(modelFile);
+        System.out.println("Model saved to: " + modelFile);
+        return model;
+    }
+
+    private static double millisSince(long start) {
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    public static void main(String[] args) {
+        String configFilePath = args.length > 0 ? args[0] : "pipeline.properties";
+        try {
+            new Pipeline(Config.load(configFilePath)).run();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error running pipeline: " + e.getMessage());
+        }
+    }
+}
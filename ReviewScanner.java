@@ -0,0 +1,244 @@
+// Fused feature extractor: walks a review once and produces every feature that the
+// individual index.calculate* methods compute, without regex or per-word Strings.
+// The counts reproduce the split() semantics of the original methods exactly:
+//   - word tokens are runs of [A-Za-z0-9_] (the "\\W+" split), compared lowercased
+//   - sentences are the pieces of split("[.!?]"), words/syllables the pieces of split("\\s+")
+// A scanner keeps scratch state between calls, so use one instance per thread.
+public class ReviewScanner {
+
+    private static final Metrics.Timer SCAN_TIMER = Metrics.timer("extract.scan");
+    private static final Metrics.Counter TOKEN_COUNTER = Metrics.counter("extract.tokens");
+
+    private final Lexicon stopwords;
+    private final Lexicon adjectives;
+
+    // Scratch open-addressed table of distinct tokens (offsets into the current review)
+    private int[] slotStart = new int[256];
+    private int[] slotLength = new int[256];
+    private int[] slotHash = new int[256];
+    private int[] slotStamp = new int[256];
+    private int stamp;
+
+    // Scratch copy of reviews that are not already backed by a char array
+    private char[] scratch = new char[1024];
+
+    // Results of the last scan
+    private int pausality;
+    private int splitWords;       // length of review.toLowerCase().split("\\W+")
+    private int lexicalWords;
+    private int uniqueWords;
+    private int sentences;        // length of text.split("[.!?]")
+    private int words;            // length of text.split("\\s+")
+    private int syllables;
+    private int adjectiveCount;
+
+    public ReviewScanner(Lexicon stopwords, Lexicon adjectives) {
+        this.stopwords = stopwords;
+        this.adjectives = adjectives;
+    }
+
+    // Scan a review and keep the results until the next call
+    public ReviewScanner scan(CharSequence review) {
+        if (review instanceof CharSlice) {
+            CharSlice slice = (CharSlice) review;
+            return scan(slice.array(), slice.start(), slice.end());
+        }
+        int length = review.length();
+        if (length > scratch.length) {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+        }
+        if (review instanceof String) {
+            ((String) review).getChars(0, length, scratch, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                scratch[i] = review.charAt(i);
+            }
+        }
+        return scan(scratch, 0, length);
+    }
+
+    // Scan text[from, to) and keep the results until the next call
+    public ReviewScanner scan(char[] text, int from, int to) {
+        long start = SCAN_TIMER.start();
+        int length = to - from;
+        prepareTokenTable(length);
+
+        int tokens = 0, pauses = 0, lexical = 0, unique = 0, adjectiveHits = 0;
+        int delimiters = 0, sentencePieces = length == 0 ? 1 : 0;
+        int whitespaceRuns = 0, wordPieces = length == 0 ? 1 : 0;
+        int closedSyllables = 0, pieceVowelGroups = 0, totalSyllables = length == 0 ? 1 : 0;
+        boolean inVowelGroup = false, previousWhitespace = false;
+
+        int tokenStart = -1, tokenHash = 0;
+        boolean tokenHasLetter = false;
+
+        for (int i = from; i <= to; i++) {
+            char c = i < to ? text[i] : ' ';
+            char lower = Lexicon.toLower(c);
+            boolean letter = lower >= 'a' && lower <= 'z';
+
+            // Word tokens ("\\W+" split)
+            if (i < to && (letter || (c >= '0' && c <= '9') || c == '_')) {
+                if (tokenStart < 0) {
+                    tokenStart = i;
+                    tokenHash = 0;
+                    tokenHasLetter = false;
+                }
+                tokenHash = 31 * tokenHash + lower; // Lexicon.hash, computed incrementally
+                tokenHasLetter |= letter;
+            } else if (tokenStart >= 0) {
+                tokens++;
+                if (tokenHasLetter) {
+                    lexical++;
+                }
+                if (!stopwords.contains(text, tokenStart, i, tokenHash)) {
+                    pauses++;
+                }
+                if (adjectives.contains(text, tokenStart, i, tokenHash)) {
+                    adjectiveHits++;
+                }
+                if (addToken(text, tokenStart, i - tokenStart, tokenHash)) {
+                    unique++;
+                }
+                tokenStart = -1;
+            }
+
+            if (i == to) {
+                break;
+            }
+
+            // Sentences ("[.!?]" split, trailing empty pieces dropped)
+            if (c == '.' || c == '!' || c == '?') {
+                delimiters++;
+            } else {
+                sentencePieces = delimiters + 1;
+            }
+
+            // Words and syllables ("\\s+" split, trailing empty pieces dropped)
+            boolean whitespace = c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+            if (whitespace) {
+                if (i == from || !previousWhitespace) {
+                    whitespaceRuns++;
+                    closedSyllables += Math.max(pieceVowelGroups, 1);
+                    pieceVowelGroups = 0;
+                    inVowelGroup = false;
+                }
+            } else {
+                if (letter) {
+                    boolean vowel = lower == 'a' || lower == 'e' || lower == 'i' || lower == 'o' || lower == 'u' || lower == 'y';
+                    if (vowel && !inVowelGroup) {
+                        pieceVowelGroups++;
+                    }
+                    inVowelGroup = vowel;
+                }
+                wordPieces = whitespaceRuns + 1;
+                totalSyllables = closedSyllables + Math.max(pieceVowelGroups, 1);
+            }
+            previousWhitespace = whitespace;
+        }
+
+        this.pausality = pauses;
+        this.lexicalWords = lexical;
+        this.uniqueWords = unique;
+        this.adjectiveCount = adjectiveHits;
+        if (tokens > 0) {
+            boolean leadingSeparator = !isWordChar(text[from]);
+            this.splitWords = tokens + (leadingSeparator ? 1 : 0);
+        } else {
+            this.splitWords = length == 0 ? 1 : 0;
+        }
+        this.sentences = sentencePieces;
+        this.words = wordPieces;
+        this.syllables = totalSyllables;
+        TOKEN_COUNTER.add(tokens);
+        SCAN_TIMER.stop(start);
+        return this;
+    }
+
+    // PAUSALITY: number of tokens that are not stopwords
+    public int pausality() {
+        return pausality;
+    }
+
+    // CONTENT DIVERSITY
+    public double typeTokenRatio() {
+        return (double) uniqueWords / splitWords;
+    }
+
+    public double lexicalDensity() {
+        return (double) lexicalWords / splitWords;
+    }
+
+    // READABILITY USING FRE
+    public double fleschReadingEase() {
+        return 206.835 - 1.015 * ((double) words / sentences)
+                        - 84.6 * ((double) syllables / words);
+    }
+
+    public int sentences() {
+        return sentences;
+    }
+
+    public int words() {
+        return words;
+    }
+
+    public int syllables() {
+        return syllables;
+    }
+
+    public int adjectiveCount() {
+        return adjectiveCount;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean regionEqualsIgnoreCase(char[] a, int aStart, char[] b, int bStart, int length) {
+        for (int k = 0; k < length; k++) {
+            if (Lexicon.toLower(a[aStart + k]) != Lexicon.toLower(b[bStart + k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Size the distinct-token table so that it is at most half full for this review
+    private void prepareTokenTable(int reviewLength) {
+        int needed = Integer.highestOneBit(Math.max(reviewLength, 64)) << 1;
+        if (needed > slotStamp.length) {
+            slotStart = new int[needed];
+            slotLength = new int[needed];
+            slotHash = new int[needed];
+            slotStamp = new int[needed];
+            stamp = 0;
+        }
+        if (++stamp == 0) { // stamp wrapped around, clear stale entries
+            java.util.Arrays.fill(slotStamp, 0);
+            stamp = 1;
+        }
+    }
+
+    // Returns true if the token was not seen before in the current review
+    private boolean addToken(char[] review, int start, int length, int hash) {
+        int mask = slotStamp.length - 1;
+        int slot = mix(hash) & mask;
+        while (slotStamp[slot] == stamp) {
+            if (slotHash[slot] == hash && slotLength[slot] == length
+                    && regionEqualsIgnoreCase(review, slotStart[slot], review, start, length)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slotStamp[slot] = stamp;
+        slotStart[slot] = start;
+        slotLength[slot] = length;
+        slotHash[slot] = hash;
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
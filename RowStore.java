@@ -0,0 +1,283 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Out-of-core training matrix: labelled rows in a memory-mapped file, so the training set
+// lives in the page cache instead of on the heap and may be far larger than either. Rows are
+// row-major (an SGD step reads one whole row) with the label in front, stored as float32 or
+// float64; float32 halves the file and the I/O per epoch.
+//
+// The file is mapped in chunks of whole rows (a mapping is limited to 2 GB); SVMTest streams
+// an epoch one chunk at a time, so with rows visited in chunk order the OS reads the file
+// sequentially and can evict chunks already done.
+//
+// Layout (little-endian):
+//   int magic 'ROWS', int format version, long row count, int columns (features),
+//   byte value type (ColumnFile.Type ordinal), padding, long size and long modification time
+//   (ms) of the feature table the rows came from (-1 if unknown), padding to HEADER_BYTES,
+//   rows: label (-1/1), then the features
+//
+// The file only appears once the writer is committed, so a store is always complete.
+public final class RowStore implements Closeable {
+
+    private static final int MAGIC = 0x524F5753; // "ROWS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 48;
+    // Largest mapping; chunks hold as many whole rows as fit
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long rows;
+    private final int columns;
+    private final ColumnFile.Type type;
+    private final long sourceSize;
+    private final long sourceModified;
+    private final long chunkRows;
+    private final ByteBuffer[] chunks;
+
+    private RowStore(FileChannel channel, long rows, int columns, ColumnFile.Type type, long sourceSize,
+                     long sourceModified, long chunkRows, ByteBuffer[] chunks) {
+        this.channel = channel;
+        this.rows = rows;
+        this.columns = columns;
+        this.type = type;
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+        this.chunkRows = chunkRows;
+        this.chunks = chunks;
+    }
+
+    public static RowStore open(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException(filePath + " is not a row store");
+                }
+            }
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(filePath + " is not a row store");
+            }
+            int version = header.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported row store version " + version + " in " + filePath);
+            }
+            long rows = header.getLong(8);
+            int columns = header.getInt(16);
+            int typeOrdinal = header.get(20);
+            ColumnFile.Type type = typeOrdinal >= 0 && typeOrdinal < ColumnFile.Type.values().length
+                    ? ColumnFile.Type.values()[typeOrdinal] : null;
+            if (type != ColumnFile.Type.FLOAT32 && type != ColumnFile.Type.FLOAT64) {
+                throw new IOException("Unsupported value type " + typeOrdinal + " in " + filePath);
+            }
+
+            long rowBytes = (long) (columns + 1) * type.width;
+            if (HEADER_BYTES + rows * rowBytes > channel.size()) {
+                throw new IOException("Row store " + filePath + " is truncated");
+            }
+            long chunkRows = Math.max(1, CHUNK_BYTES / rowBytes);
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((rows + chunkRows - 1) / chunkRows)];
+            for (int c = 0; c < chunks.length; c++) {
+                long first = c * chunkRows;
+                long count = Math.min(chunkRows, rows - first);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * rowBytes,
+                        count * rowBytes);
+                chunks[c] = chunk.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new RowStore(channel, rows, columns, type, header.getLong(24), header.getLong(32), chunkRows,
+                    chunks);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Copy the rows of a feature table (CSV or ColumnFile, label first, 0/1 or -1/1) into a
+    // new store at storePath, one row at a time. The table's size and modification time are
+    // recorded, for isBuiltFrom(). A failure leaves any earlier store at storePath in place.
+    public static RowStore build(String featureFilePath, String storePath, ColumnFile.Type type) throws IOException {
+        Path source = Paths.get(featureFilePath);
+        boolean stamped = Files.isRegularFile(source);
+        long size = stamped ? Files.size(source) : -1;
+        long modified = stamped ? Files.getLastModifiedTime(source).toMillis() : -1;
+        try (FeatureRows in = FeatureRows.open(featureFilePath);
+             Writer out = create(storePath, in.features(), type)) {
+            double[] features = new double[in.features()];
+            while (in.next()) {
+                in.features(features);
+                out.add(in.label() > 0 ? 1 : -1, features);
+            }
+            out.commit(size, modified);
+        }
+        return open(storePath);
+    }
+
+    public static Writer create(String filePath, int columns, ColumnFile.Type type) throws IOException {
+        if (type != ColumnFile.Type.FLOAT32 && type != ColumnFile.Type.FLOAT64) {
+            throw new IllegalArgumentException("Row stores hold FLOAT32 or FLOAT64, not " + type);
+        }
+        return new Writer(Paths.get(filePath), columns, type);
+    }
+
+    // Was this store built from the feature table as it is now (same size and modification time)?
+    public boolean isBuiltFrom(String featureFilePath) throws IOException {
+        Path source = Paths.get(featureFilePath);
+        return sourceSize >= 0 && Files.isRegularFile(source) && Files.size(source) == sourceSize
+                && Files.getLastModifiedTime(source).toMillis() == sourceModified;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public ColumnFile.Type type() {
+        return type;
+    }
+
+    public int chunks() {
+        return chunks.length;
+    }
+
+    // First row of a chunk
+    public long chunkStart(int chunk) {
+        return chunk * chunkRows;
+    }
+
+    public int chunkRows(int chunk) {
+        return (int) Math.min(chunkRows, rows - chunk * chunkRows);
+    }
+
+    // Label (-1/1) of row i of the chunk
+    public int label(int chunk, int i) {
+        ByteBuffer data = chunks[chunk];
+        return type == ColumnFile.Type.FLOAT32
+                ? (int) data.getFloat(i * (columns + 1) * 4)
+                : (int) data.getDouble(i * (columns + 1) * 8);
+    }
+
+    // Features of row i of the chunk into out
+    public void read(int chunk, int i, double[] out) {
+        ByteBuffer data = chunks[chunk];
+        if (type == ColumnFile.Type.FLOAT32) {
+            int at = (i * (columns + 1) + 1) * 4;
+            for (int j = 0; j < columns; j++) {
+                out[j] = data.getFloat(at + j * 4);
+            }
+        } else {
+            int at = (i * (columns + 1) + 1) * 8;
+            for (int j = 0; j < columns; j++) {
+                out[j] = data.getDouble(at + j * 8);
+            }
+        }
+    }
+
+    // The mappings stay valid until they are garbage collected; this releases the file handle
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Appends rows through a buffer to a temporary file. commit() fills in the header and
+    // moves the file into place; closing without a commit deletes it and leaves the target alone.
+    public static final class Writer implements Closeable {
+        private final Path path;
+        private final Path temp;
+        private final int columns;
+        private final ColumnFile.Type type;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long rows;
+        private boolean closed;
+
+        private Writer(Path path, int columns, ColumnFile.Type type) throws IOException {
+            this.path = path;
+            this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+            this.columns = columns;
+            this.type = type;
+            channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_BYTES);
+        }
+
+        public void add(int label, double[] features) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("Row store writer is closed");
+            }
+            if (features.length != columns) {
+                throw new IllegalArgumentException("Expected " + columns + " features, got " + features.length);
+            }
+            if (buffer.remaining() < (columns + 1) * type.width) {
+                drain();
+            }
+            if (type == ColumnFile.Type.FLOAT32) {
+                buffer.putFloat(label);
+                for (double value : features) {
+                    buffer.putFloat((float) value);
+                }
+            } else {
+                buffer.putDouble(label);
+                for (double value : features) {
+                    buffer.putDouble(value);
+                }
+            }
+            rows++;
+        }
+
+        // Publish the rows added so far, built from a source of the given size and modification
+        // time (-1 when unknown)
+        public void commit(long sourceSize, long sourceModified) throws IOException {
+            if (closed) {
+                throw new IllegalStateException("Row store writer is closed");
+            }
+            closed = true;
+            try (FileChannel out = channel) {
+                drain();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putLong(rows).putInt(columns).put((byte) type.ordinal());
+                header.putLong(24, sourceSize).putLong(32, sourceModified);
+                header.clear();
+                while (header.hasRemaining()) {
+                    out.write(header, header.position());
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Abandons the rows unless commit() ran
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
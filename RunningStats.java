@@ -0,0 +1,132 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Per-column running mean/variance using Welford's update, plus min and max.
+// Accumulators built over different threads or file shards can be combined with merge()
+// (Chan et al. pairwise formula), so statistics never need the whole dataset in memory.
+// Variance is the population variance (divides by n), as in DataNormalization.standardizeData.
+// write()/read() persist the accumulator itself, so a later run can merge in only new rows.
+public class RunningStats {
+
+    private long count;
+    private final double[] mean;
+    private final double[] m2;    // sum of squared deviations from the mean
+    private final double[] min;
+    private final double[] max;
+
+    public RunningStats(int columns) {
+        mean = new double[columns];
+        m2 = new double[columns];
+        min = new double[columns];
+        max = new double[columns];
+        java.util.Arrays.fill(min, Double.POSITIVE_INFINITY);
+        java.util.Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    public void add(double[] row) {
+        count++;
+        for (int j = 0; j < mean.length; j++) {
+            double value = row[j];
+            double delta = value - mean[j];
+            mean[j] += delta / count;
+            m2[j] += delta * (value - mean[j]);
+            if (value < min[j]) min[j] = value;
+            if (value > max[j]) max[j] = value;
+        }
+    }
+
+    // Single-column statistics of values[from, to)
+    public static RunningStats ofColumn(double[] values, int from, int to) {
+        RunningStats stats = new RunningStats(1);
+        double mean = 0, m2 = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        long n = 0;
+        for (int i = from; i < to; i++) {
+            double value = values[i];
+            n++;
+            double delta = value - mean;
+            mean += delta / n;
+            m2 += delta * (value - mean);
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        stats.count = n;
+        stats.mean[0] = mean;
+        stats.m2[0] = m2;
+        stats.min[0] = min;
+        stats.max[0] = max;
+        return stats;
+    }
+
+    // Fold another accumulator (same columns) into this one
+    public RunningStats merge(RunningStats other) {
+        if (other.columns() != columns()) {
+            throw new IllegalArgumentException("Column count mismatch: " + columns() + " vs " + other.columns());
+        }
+        if (other.count == 0) {
+            return this;
+        }
+        long total = count + other.count;
+        for (int j = 0; j < mean.length; j++) {
+            double delta = other.mean[j] - mean[j];
+            mean[j] += delta * other.count / total;
+            m2[j] += other.m2[j] + delta * delta * ((double) count * other.count / total);
+            min[j] = Math.min(min[j], other.min[j]);
+            max[j] = Math.max(max[j], other.max[j]);
+        }
+        count = total;
+        return this;
+    }
+
+    public int columns() {
+        return mean.length;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean(int column) {
+        return mean[column];
+    }
+
+    public double variance(int column) {
+        return m2[column] / count;
+    }
+
+    public double stdDev(int column) {
+        return Math.sqrt(variance(column));
+    }
+
+    public double min(int column) {
+        return min[column];
+    }
+
+    public double max(int column) {
+        return max[column];
+    }
+
+    // Full accumulator state: columns, count, then mean, m2, min, max per column
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(mean.length);
+        out.writeLong(count);
+        for (int j = 0; j < mean.length; j++) {
+            out.writeDouble(mean[j]);
+            out.writeDouble(m2[j]);
+            out.writeDouble(min[j]);
+            out.writeDouble(max[j]);
+        }
+    }
+
+    public static RunningStats read(DataInput in) throws IOException {
+        RunningStats stats = new RunningStats(in.readInt());
+        stats.count = in.readLong();
+        for (int j = 0; j < stats.mean.length; j++) {
+            stats.mean[j] = in.readDouble();
+            stats.m2[j] = in.readDouble();
+            stats.min[j] = in.readDouble();
+            stats.max[j] = in.readDouble();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,52 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+// Lightweight scoring entry point: loads the model file written by SVMTest.main and
+// predicts each line of standardized features read from standard input. Never touches
+// the training data, so start-up is just the JVM plus one small file read.
+public class SVMPredictor {
+
+    public static void main(String[] args) {
+        String modelFile = args.length > 0 ? args[0] : "C:/Users/jaska/OneDrive/Desktop/Minor/rev/model.bin"; // Written by SVMTest
+
+        SVMTest model;
+        try {
+            model = SVMTest.load(modelFile);
+        } catch (IOException e) {
+            System.err.println("Error reading model file: " + e.getMessage());
+            return;
+        }
+
+        System.out.println("Enter " + model.numFeatures() + " features per line (space- or comma-separated): ");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+            String line;
+            double[] features = new double[model.numFeatures()];
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split("[\\s,]+");
+                if (values.length != features.length) {
+                    System.err.println("Expected " + features.length + " features, got " + values.length);
+                    continue;
+                }
+                try {
+                    for (int i = 0; i < features.length; i++) {
+                        features[i] = Double.parseDouble(values[i]);
+                    }
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid feature value: " + e.getMessage());
+                    continue;
+                }
+
+                // Predict and display result
+                int prediction = model.predict(features);
+                System.out.println("Prediction: " + ((prediction == 1) ? "Real" : "Fake"));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading input: " + e.getMessage());
+        }
+    }
+}
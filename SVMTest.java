@@ -1,14 +1,26 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
 
 public class SVMTest {
 
-    
+    private static final Metrics.Timer EPOCH_TIMER = Metrics.timer("svm.epoch");
+    private static final Metrics.Timer MARGINS_TIMER = Metrics.timer("svm.margins");
+    // Rows scored by predict() and margins(); a per-call timer would cost more than predict() itself
+    private static final Metrics.Counter PREDICT_COUNTER = Metrics.counter("svm.predict");
+
     private double[] weights;
     private double bias;
 
@@ -27,6 +39,7 @@ public class SVMTest {
         bias = 0;
 
         for (int epoch = 0; epoch < epochs; epoch++) {
+            long start = EPOCH_TIMER.start();
             for (int i = 0; i < X.length; i++) {
                 double margin = y[i] * (dotProduct(weights, X[i]) + bias);
                 if (margin >= 1) {
@@ -40,15 +53,559 @@ public class SVMTest {
                     bias -= learningRate * (-y[i]);
                 }
             }
+            EPOCH_TIMER.stop(start);
+        }
+    }
+
+    // Step size schedules for trainUntilConverged
+    public enum Schedule {
+        CONSTANT,   // learningRate every step, as train() does
+        PEGASOS     // learningRate / (1 + 2 * regularizationParam * learningRate * t), tending to Pegasos' 1 / (2 * lambda * t)
+    }
+
+    // Settings for trainUntilConverged; the defaults stop once the objective has improved by
+    // less than 0.01% for 5 epochs in a row
+    public static final class TrainingOptions {
+        public int maxEpochs = 600;
+        public double tolerance = 1e-4;   // relative objective improvement that still counts as progress
+        public int patience = 5;          // epochs without progress before stopping
+        public boolean shuffle = true;    // visit rows in a new random order every epoch
+        public long seed = 42;
+        public Schedule schedule = Schedule.CONSTANT;
+        public int batchSize = 1;         // rows per update of each trainParallel thread
+    }
+
+    // Objective value after each epoch of the last trainUntilConverged call
+    private double[] objectiveHistory = new double[0];
+
+    // SGD like train(), but tracks the primal objective lambda * |w|^2 + mean hinge loss per epoch
+    // and stops early once it plateaus. The hinge term is the running average over the epoch
+    // (each sample's loss is taken before its update), so tracking costs no extra pass.
+    // Returns the number of epochs run.
+    public int trainUntilConverged(double[][] X, int[] y, TrainingOptions options) {
+        int[] rows = new int[X.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        return trainUntilConverged(X, y, rows, options);
+    }
+
+    // Train on the subset X[rows[k]] only, e.g. a cross-validation fold, without copying rows
+    public int trainUntilConverged(double[][] X, int[] y, int[] rows, TrainingOptions options) {
+        int numFeatures = X[0].length;
+        weights = new double[numFeatures];
+        bias = 0;
+
+        int[] order = rows.clone();
+        Random random = new Random(options.seed);
+        double[] history = new double[options.maxEpochs];
+        double best = Double.POSITIVE_INFINITY;
+        int stalled = 0;
+        long step = 0;
+
+        int epoch = 0;
+        while (epoch < options.maxEpochs) {
+            long start = EPOCH_TIMER.start();
+            if (options.shuffle) {
+                DataSplit.shuffle(order, random);
+            }
+
+            double hingeSum = 0;
+            for (int i : order) {
+                double rate = options.schedule == Schedule.PEGASOS
+                        ? learningRate / (1 + 2 * regularizationParam * learningRate * step)
+                        : learningRate;
+                step++;
+                double margin = y[i] * (dotProduct(weights, X[i]) + bias);
+                if (margin >= 1) {
+                    for (int j = 0; j < numFeatures; j++) {
+                        weights[j] -= rate * (2 * regularizationParam * weights[j]);
+                    }
+                } else {
+                    hingeSum += 1 - margin;
+                    for (int j = 0; j < numFeatures; j++) {
+                        weights[j] -= rate * (2 * regularizationParam * weights[j] - y[i] * X[i][j]);
+                    }
+                    bias -= rate * (-y[i]);
+                }
+            }
+
+            double objective = regularizationParam * dotProduct(weights, weights) + hingeSum / order.length;
+            history[epoch++] = objective;
+            EPOCH_TIMER.stop(start);
+            if (objective < best * (1 - options.tolerance)) {
+                best = objective;
+                stalled = 0;
+            } else if (++stalled >= options.patience) {
+                break;
+            }
+        }
+        objectiveHistory = Arrays.copyOf(history, epoch);
+        return epoch;
+    }
+
+    // Sparse counterpart of train(): the same updates, in O(nnz) per row instead of O(features)
+    public void train(SparseMatrix X, int[] y, int epochs) {
+        TrainingOptions options = new TrainingOptions();
+        options.maxEpochs = epochs;
+        options.patience = Integer.MAX_VALUE;
+        options.shuffle = false;
+        trainUntilConverged(X, y, IntStream.range(0, X.rows()).toArray(), options);
+    }
+
+    // Sparse counterpart of trainUntilConverged(). The weights are kept as scale * v: the L2
+    // shrink that train() applies to every weight on every step becomes one multiply of
+    // scale, and a hinge step adds to v only at the row's nonzero indices. |v|^2 is tracked
+    // as entries change, so the objective needs no pass over all weights either.
+    public int trainUntilConverged(SparseMatrix X, int[] y, int[] rows, TrainingOptions options) {
+        double[] v = new double[X.dimension()];
+        double scale = 1;
+        double squaredNorm = 0; // |v|^2
+        bias = 0;
+        int[] indices = X.indices();
+        double[] values = X.values();
+
+        int[] order = rows.clone();
+        Random random = new Random(options.seed);
+        double[] history = new double[options.maxEpochs];
+        double best = Double.POSITIVE_INFINITY;
+        int stalled = 0;
+        long step = 0;
+
+        int epoch = 0;
+        while (epoch < options.maxEpochs) {
+            long start = EPOCH_TIMER.start();
+            if (options.shuffle) {
+                DataSplit.shuffle(order, random);
+            }
+
+            double hingeSum = 0;
+            for (int i : order) {
+                double rate = options.schedule == Schedule.PEGASOS
+                        ? learningRate / (1 + 2 * regularizationParam * learningRate * step)
+                        : learningRate;
+                step++;
+                double margin = y[i] * (scale * X.dot(i, v) + bias);
+
+                double shrink = 1 - 2 * rate * regularizationParam;
+                if (shrink == 0) {
+                    Arrays.fill(v, 0);
+                    scale = 1;
+                    squaredNorm = 0;
+                } else {
+                    scale *= shrink;
+                }
+                if (margin < 1) {
+                    hingeSum += 1 - margin;
+                    double add = rate * y[i] / scale;
+                    for (int k = X.rowStart(i); k < X.rowEnd(i); k++) {
+                        int j = indices[k];
+                        double old = v[j];
+                        v[j] = old + add * values[k];
+                        squaredNorm += v[j] * v[j] - old * old;
+                    }
+                    bias -= rate * (-y[i]);
+                }
+
+                // Fold scale into v before it under- or overflows
+                if (Math.abs(scale) < 1e-9 || Math.abs(scale) > 1e9) {
+                    squaredNorm = 0;
+                    for (int j = 0; j < v.length; j++) {
+                        v[j] *= scale;
+                        squaredNorm += v[j] * v[j];
+                    }
+                    scale = 1;
+                }
+            }
+
+            double objective = regularizationParam * scale * scale * squaredNorm + hingeSum / order.length;
+            history[epoch++] = objective;
+            EPOCH_TIMER.stop(start);
+            if (objective < best * (1 - options.tolerance)) {
+                best = objective;
+                stalled = 0;
+            } else if (++stalled >= options.patience) {
+                break;
+            }
+        }
+
+        for (int j = 0; j < v.length; j++) {
+            v[j] *= scale;
+        }
+        weights = v;
+        objectiveHistory = Arrays.copyOf(history, epoch);
+        return epoch;
+    }
+
+    // Rows shuffled together when training from a RowStore; bounds the order array per chunk
+    private static final int SHUFFLE_BLOCK = 1 << 16;
+
+    // Out-of-core counterpart of train(): the same updates, streamed over a RowStore
+    public void train(RowStore X, int epochs) {
+        TrainingOptions options = new TrainingOptions();
+        options.maxEpochs = epochs;
+        options.patience = Integer.MAX_VALUE;
+        options.shuffle = false;
+        trainUntilConverged(X, null, options);
+    }
+
+    // Out-of-core counterpart of trainUntilConverged(). Each epoch streams over the store one
+    // mapped chunk at a time and only the current row is copied onto the heap, so memory use
+    // does not grow with the data. Shuffling is blockwise to keep the reads local: the chunks
+    // in random order, the blocks of SHUFFLE_BLOCK rows within a chunk in random order, and the
+    // rows within a block. Rows where trainRow is false (a held-out set) are skipped; null
+    // trains on every row.
+    public int trainUntilConverged(RowStore X, LongPredicate trainRow, TrainingOptions options) {
+        int numFeatures = X.columns();
+        weights = new double[numFeatures];
+        bias = 0;
+
+        double[] x = new double[numFeatures];
+        int[] chunkOrder = IntStream.range(0, X.chunks()).toArray();
+        int[] blockOrder = new int[0];
+        int[] rowOrder = new int[SHUFFLE_BLOCK];
+        Random random = new Random(options.seed);
+        double[] history = new double[options.maxEpochs];
+        double best = Double.POSITIVE_INFINITY;
+        int stalled = 0;
+        long step = 0;
+
+        int epoch = 0;
+        while (epoch < options.maxEpochs) {
+            long start = EPOCH_TIMER.start();
+            if (options.shuffle) {
+                DataSplit.shuffle(chunkOrder, random);
+            }
+
+            double hingeSum = 0;
+            long visited = 0;
+            for (int chunk : chunkOrder) {
+                int chunkRows = X.chunkRows(chunk);
+                int blocks = (chunkRows + SHUFFLE_BLOCK - 1) / SHUFFLE_BLOCK;
+                if (blockOrder.length != blocks) {
+                    blockOrder = new int[blocks];
+                }
+                for (int b = 0; b < blocks; b++) {
+                    blockOrder[b] = b;
+                }
+                if (options.shuffle) {
+                    DataSplit.shuffle(blockOrder, random);
+                }
+                for (int block : blockOrder) {
+                    int first = block * SHUFFLE_BLOCK;
+                    int count = Math.min(SHUFFLE_BLOCK, chunkRows - first);
+                    for (int k = 0; k < count; k++) {
+                        rowOrder[k] = first + k;
+                    }
+                    if (options.shuffle) {
+                        for (int k = count - 1; k > 0; k--) {
+                            int other = random.nextInt(k + 1);
+                            int swap = rowOrder[k];
+                            rowOrder[k] = rowOrder[other];
+                            rowOrder[other] = swap;
+                        }
+                    }
+
+                    for (int k = 0; k < count; k++) {
+                        int i = rowOrder[k];
+                        if (trainRow != null && !trainRow.test(X.chunkStart(chunk) + i)) {
+                            continue;
+                        }
+                        double rate = options.schedule == Schedule.PEGASOS
+                                ? learningRate / (1 + 2 * regularizationParam * learningRate * step)
+                                : learningRate;
+                        step++;
+                        visited++;
+                        int label = X.label(chunk, i);
+                        X.read(chunk, i, x);
+                        double margin = label * (dotProduct(weights, x) + bias);
+                        if (margin >= 1) {
+                            for (int j = 0; j < numFeatures; j++) {
+                                weights[j] -= rate * (2 * regularizationParam * weights[j]);
+                            }
+                        } else {
+                            hingeSum += 1 - margin;
+                            for (int j = 0; j < numFeatures; j++) {
+                                weights[j] -= rate * (2 * regularizationParam * weights[j] - label * x[j]);
+                            }
+                            bias -= rate * (-label);
+                        }
+                    }
+                }
+            }
+
+            double objective = regularizationParam * dotProduct(weights, weights) + hingeSum / Math.max(1, visited);
+            history[epoch++] = objective;
+            EPOCH_TIMER.stop(start);
+            if (objective < best * (1 - options.tolerance)) {
+                best = objective;
+                stalled = 0;
+            } else if (++stalled >= options.patience) {
+                break;
+            }
+        }
+        objectiveHistory = Arrays.copyOf(history, epoch);
+        return epoch;
+    }
+
+    public double[] getObjectiveHistory() {
+        return objectiveHistory.clone();
+    }
+
+    // Fewest rows per thread before trainParallel splits the work; below that the hand-off
+    // at every epoch costs more than the thread saves
+    private static final int PARALLEL_MIN_ROWS = 10_000;
+
+    // trainUntilConverged with the rows spread over up to threads threads, Hogwild style: every
+    // thread updates one shared parameter array without locks. Each epoch the shuffled rows are
+    // dealt out so thread t takes order[t], order[t + workers], ..., keeping the input's mix of
+    // labels, and each step averages the subgradient over options.batchSize of its rows. Every
+    // thread gets at least PARALLEL_MIN_ROWS rows; on one thread with batchSize 1 this is
+    // exactly trainUntilConverged. Returns the number of epochs run.
+    public int trainParallel(double[][] X, int[] y, int[] rows, TrainingOptions options, int threads) {
+        int workers = Math.max(1, Math.min(threads, rows.length / PARALLEL_MIN_ROWS));
+        int batchSize = Math.max(1, options.batchSize);
+        if (workers == 1 && batchSize == 1) {
+            return trainUntilConverged(X, y, rows, options);
+        }
+        int numFeatures = X[0].length;
+        // weights followed by the bias; plain (racy) reads and writes are the point of Hogwild
+        double[] params = new double[numFeatures + 1];
+
+        int[] order = rows.clone();
+        Random random = new Random(options.seed);
+        double[] history = new double[options.maxEpochs];
+        double best = Double.POSITIVE_INFINITY;
+        int stalled = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        int epoch = 0;
+        try {
+            List<Callable<Double>> partitions = new ArrayList<>();
+            long[] epochStep = new long[1];
+            for (int t = 0; t < workers; t++) {
+                int first = t;
+                partitions.add(() -> trainPartition(X, y, order, params, first, workers, batchSize, options,
+                        epochStep[0]));
+            }
+            while (epoch < options.maxEpochs) {
+                long start = EPOCH_TIMER.start();
+                if (options.shuffle) {
+                    DataSplit.shuffle(order, random);
+                }
+                epochStep[0] = (long) epoch * order.length;
+                double hingeSum = 0;
+                for (Future<Double> done : pool.invokeAll(partitions)) {
+                    hingeSum += done.get();
+                }
+
+                double squaredNorm = 0;
+                for (int j = 0; j < numFeatures; j++) {
+                    squaredNorm += params[j] * params[j];
+                }
+                double objective = regularizationParam * squaredNorm + hingeSum / order.length;
+                history[epoch++] = objective;
+                EPOCH_TIMER.stop(start);
+                if (objective < best * (1 - options.tolerance)) {
+                    best = objective;
+                    stalled = 0;
+                } else if (++stalled >= options.patience) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Training failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        weights = Arrays.copyOf(params, numFeatures);
+        bias = params[numFeatures];
+        objectiveHistory = Arrays.copyOf(history, epoch);
+        return epoch;
+    }
+
+    // One epoch over order[first], order[first + stride], ... in mini-batches of batchSize rows.
+    // Steps are counted as if the threads took turns, starting from step. Returns the hinge
+    // loss summed over the rows, each taken before its update.
+    private double trainPartition(double[][] X, int[] y, int[] order, double[] params, int first, int stride,
+                                  int batchSize, TrainingOptions options, long step) {
+        int numFeatures = params.length - 1;
+        double[] gradient = new double[numFeatures];
+        double hingeSum = 0;
+        int k = first;
+        while (k < order.length) {
+            double rate = options.schedule == Schedule.PEGASOS
+                    ? learningRate / (1 + 2 * regularizationParam * learningRate * (step + k))
+                    : learningRate;
+            Arrays.fill(gradient, 0);
+            double biasGradient = 0;
+            int count = 0;
+            for (; k < order.length && count < batchSize; k += stride, count++) {
+                int i = order[k];
+                double margin = y[i] * (paramsDot(params, X[i]) + params[numFeatures]);
+                if (margin < 1) {
+                    hingeSum += 1 - margin;
+                    for (int j = 0; j < numFeatures; j++) {
+                        gradient[j] -= y[i] * X[i][j];
+                    }
+                    biasGradient -= y[i];
+                }
+            }
+            for (int j = 0; j < numFeatures; j++) {
+                params[j] -= rate * (2 * regularizationParam * params[j] + gradient[j] / count);
+            }
+            params[numFeatures] -= rate * biasGradient / count;
         }
+        return hingeSum;
+    }
+
+    // Weights part of trainParallel's parameter array (all but the trailing bias) dotted with x
+    private static double paramsDot(double[] params, double[] x) {
+        if (params.length != x.length + 1) {
+            throw new IllegalArgumentException("Row has " + x.length + " features, model " + (params.length - 1));
+        }
+        double result = 0;
+        for (int j = 0; j < x.length; j++) {
+            result += params[j] * x[j];
+        }
+        return result;
     }
 
     // Make predictions
     public int predict(double[] x) {
+        PREDICT_COUNTER.increment();
         double prediction = dotProduct(weights, x) + bias;
         return prediction >= 0 ? 1 : -1;
     }
 
+    // Predict one sparse row, e.g. an NgramHasher vector, in O(nnz)
+    public int predict(SparseVector x) {
+        PREDICT_COUNTER.increment();
+        double prediction = x.dot(weights) + bias;
+        return prediction >= 0 ? 1 : -1;
+    }
+
+    public int predict(SparseMatrix X, int row) {
+        PREDICT_COUNTER.increment();
+        double prediction = X.dot(row, weights) + bias;
+        return prediction >= 0 ? 1 : -1;
+    }
+
+    // Rows per tile of batch scoring; a tile of margins stays in cache while every column is added in
+    private static final int SCORING_TILE = 2048;
+
+    // Margins w.x + b of every row of the block, accumulated column by column in the same
+    // order as dotProduct, so signs match predict() exactly
+    public double[] margins(FeatureBlock block, double[] out) {
+        if (block.columns() != weights.length) {
+            throw new IllegalArgumentException("Expected " + weights.length + " features, got " + block.columns());
+        }
+        long start = MARGINS_TIMER.start();
+        int rows = block.rows();
+        double[] data = block.data();
+        for (int tile = 0; tile < rows; tile += SCORING_TILE) {
+            int end = Math.min(rows, tile + SCORING_TILE);
+            Arrays.fill(out, tile, end, 0);
+            for (int j = 0; j < weights.length; j++) {
+                double w = weights[j];
+                int offset = block.columnOffset(j);
+                for (int i = tile; i < end; i++) {
+                    out[i] += w * data[offset + i];
+                }
+            }
+            for (int i = tile; i < end; i++) {
+                out[i] += bias;
+            }
+        }
+        PREDICT_COUNTER.add(rows);
+        MARGINS_TIMER.stop(start);
+        return out;
+    }
+
+    // Predictions and confusion counts for a whole block, labels in -1/1
+    public static final class BatchResult {
+        public final int[] predictions;
+        public int truePositives, trueNegatives, falsePositives, falseNegatives;
+
+        BatchResult(int rows) {
+            predictions = new int[rows];
+        }
+
+        public double accuracy() {
+            return (double) (truePositives + trueNegatives) / predictions.length;
+        }
+    }
+
+    // Score every row of the block in one pass (y may be null when labels are unknown)
+    public BatchResult predictBatch(FeatureBlock block, int[] y) {
+        double[] margin = margins(block, new double[block.rows()]);
+        BatchResult result = new BatchResult(block.rows());
+        // counts[2 * predictedPositive + actualPositive], indexed instead of branching per row
+        int[] counts = new int[4];
+        for (int i = 0; i < margin.length; i++) {
+            int predictedPositive = margin[i] >= 0 ? 1 : 0;
+            result.predictions[i] = 2 * predictedPositive - 1;
+            if (y != null) {
+                counts[2 * predictedPositive + ((y[i] + 1) >> 1)]++;
+            }
+        }
+        result.trueNegatives = counts[0];
+        result.falseNegatives = counts[1];
+        result.falsePositives = counts[2];
+        result.truePositives = counts[3];
+        return result;
+    }
+
+    public double calculateAccuracy(FeatureBlock block, int[] y) {
+        return predictBatch(block, y).accuracy();
+    }
+
+    // Accuracy over the rows of the store where rows is true (every row when null)
+    public double calculateAccuracy(RowStore X, LongPredicate rows) {
+        double[] x = new double[X.columns()];
+        long correct = 0;
+        long total = 0;
+        for (int chunk = 0; chunk < X.chunks(); chunk++) {
+            for (int i = 0; i < X.chunkRows(chunk); i++) {
+                if (rows != null && !rows.test(X.chunkStart(chunk) + i)) {
+                    continue;
+                }
+                X.read(chunk, i, x);
+                if (predict(x) == X.label(chunk, i)) {
+                    correct++;
+                }
+                total++;
+            }
+        }
+        return (double) correct / total;
+    }
+
+    // Accuracy over the subset X[rows[k]] only
+    public double calculateAccuracy(double[][] X, int[] y, int[] rows) {
+        int correct = 0;
+        for (int i : rows) {
+            if (predict(X[i]) == y[i]) {
+                correct++;
+            }
+        }
+        return (double) correct / rows.length;
+    }
+
+    // Accuracy over the sparse rows X[rows[k]]
+    public double calculateAccuracy(SparseMatrix X, int[] y, int[] rows) {
+        int correct = 0;
+        for (int i : rows) {
+            if (predict(X, i) == y[i]) {
+                correct++;
+            }
+        }
+        return (double) correct / rows.length;
+    }
+
     // Calculate accuracy
     public double calculateAccuracy(double[][] X, int[] y) {
         int correct = 0;
@@ -60,8 +617,66 @@ public class SVMTest {
         return (double) correct / X.length;
     }
 
+    // Model file layout (big-endian): int magic 'SVMM', int format version,
+    // double learningRate, double regularizationParam, int feature count, weights, double bias
+    private static final int MODEL_MAGIC = 0x53564D4D; // "SVMM"
+    private static final int MODEL_VERSION = 1;
+
+    // Save the trained weights, bias and hyperparameters
+    public void save(String filePath) throws IOException {
+        if (weights == null) {
+            throw new IllegalStateException("Model has not been trained");
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeInt(MODEL_MAGIC);
+            out.writeInt(MODEL_VERSION);
+            out.writeDouble(learningRate);
+            out.writeDouble(regularizationParam);
+            out.writeInt(weights.length);
+            for (double weight : weights) {
+                out.writeDouble(weight);
+            }
+            out.writeDouble(bias);
+        }
+    }
+
+    // Load a model written by save(), ready to predict
+    public static SVMTest load(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (in.readInt() != MODEL_MAGIC) {
+                throw new IOException(filePath + " is not an SVM model file");
+            }
+            int version = in.readInt();
+            if (version != MODEL_VERSION) {
+                throw new IOException("Unsupported model version " + version + " in " + filePath);
+            }
+            SVMTest model = new SVMTest(in.readDouble(), in.readDouble());
+            model.weights = new double[in.readInt()];
+            for (int j = 0; j < model.weights.length; j++) {
+                model.weights[j] = in.readDouble();
+            }
+            model.bias = in.readDouble();
+            return model;
+        }
+    }
+
+    public int numFeatures() {
+        return weights.length;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public double getRegularizationParam() {
+        return regularizationParam;
+    }
+
     // Helper method to compute dot product
     private double dotProduct(double[] a, double[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Row has " + b.length + " features, model " + a.length);
+        }
         double result = 0;
         for (int i = 0; i < a.length; i++) {
             result += a[i] * b[i];
@@ -69,28 +684,171 @@ public class SVMTest {
         return result;
     }
 
+    // Model selection as main() runs it. The data is split into train and test sets
+    // (trainFraction of each label to train) with the seed; the split holds row indices into X
+    // and y, no rows are copied. Hyperparameters are tuned by stratified k-fold cross-validation
+    // on the training split, every fold x configuration job running concurrently on a bounded
+    // pool. The best configuration is then trained on the whole training split, over the
+    // threads once it is large enough (see trainParallel), and checked on the held-out test set.
+    public static SVMTest selectAndTrain(double[][] X, int[] y, double[] learningRates, double[] regularizationParams,
+                                         TrainingOptions options, double trainFraction, int k, long seed,
+                                         int threads) {
+        DataSplit split = DataSplit.stratified(y, trainFraction, seed);
+        CrossValidation.Fold[] folds = CrossValidation.folds(y, split.trainRows, k, true, seed);
+        CrossValidation.Score best = CrossValidation.best(CrossValidation.evaluate(X, y, folds,
+                learningRates, regularizationParams, options, threads));
+        double bestLearningRate = best.learningRate;
+        double bestRegularizationParam = best.regularizationParam;
+
+        System.out.println("Best Learning Rate: " + bestLearningRate);
+        System.out.println("Best Regularization Parameter: " + bestRegularizationParam);
+        System.out.printf("Cross-validation Accuracy: %.2f%% (variance %.6f)%n", best.mean() * 100, best.variance());
+
+        SVMTest bestModel = new SVMTest(bestLearningRate, bestRegularizationParam);
+        int epochs = bestModel.trainParallel(X, y, split.trainRows, options, threads);
+        System.out.println("Best model converged after " + epochs + " epochs");
+        System.out.println("Best Model Accuracy: " + bestModel.calculateAccuracy(X, y, split.testRows) * 100 + "%");
+        return bestModel;
+    }
+
+    // Largest held-out set for out-of-core training
+    private static final int OUT_OF_CORE_TEST_ROWS = 1 << 20;
+
+    // Train on a feature table too large for the heap. The table is copied into a RowStore
+    // (unless the store there has that type and was built from the table as it is now) and the
+    // model trained from the mapping. The hyperparameters are those of the model already in
+    // modelFile, e.g. from main() run on a sample that fits in memory, else the defaults below.
+    // A uniform sample of up to OUT_OF_CORE_TEST_ROWS rows is held out to check the result.
+    private static void trainOutOfCore(String featureFile, String storeFile, String modelFile, ColumnFile.Type type) {
+        double learningRate = 0.01;
+        double regularizationParam = 0.01;
+        try {
+            if (Files.exists(Paths.get(modelFile))) {
+                SVMTest tuned = load(modelFile);
+                learningRate = tuned.getLearningRate();
+                regularizationParam = tuned.getRegularizationParam();
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + modelFile + ", using default hyperparameters: " + e.getMessage());
+        }
+
+        try {
+            RowStore X = null;
+            if (Files.exists(Paths.get(storeFile))) {
+                try {
+                    X = RowStore.open(storeFile);
+                    if (X.type() != type || !X.isBuiltFrom(featureFile)) {
+                        X.close();
+                        X = null;
+                    }
+                } catch (IOException e) {
+                    System.out.println("Rebuilding " + storeFile + ": " + e.getMessage());
+                }
+            }
+            if (X == null) {
+                X = RowStore.build(featureFile, storeFile, type);
+            }
+            try (RowStore rows = X) {
+                System.out.println("Training on " + rows.rows() + " rows (" + rows.type() + ", " + rows.chunks()
+                        + " mapped chunks)");
+                if (rows.rows() < 2) {
+                    throw new IOException(featureFile + " has " + rows.rows()
+                            + " rows, at least 2 are needed (one is held out)");
+                }
+                // A fifth of the rows, but at least one, so the held-out accuracy is defined
+                DataSplit.Reservoir holdout = new DataSplit.Reservoir(
+                        (int) Math.max(1, Math.min(OUT_OF_CORE_TEST_ROWS, rows.rows() / 5)), 42);
+                for (long row = 0; row < rows.rows(); row++) {
+                    holdout.offer(row);
+                }
+
+                SVMTest model = new SVMTest(learningRate, regularizationParam);
+                int epochs = model.trainUntilConverged(rows, row -> !holdout.isTest(row), new TrainingOptions());
+                System.out.println("Converged after " + epochs + " epochs (learning rate " + learningRate
+                        + ", regularization " + regularizationParam + ")");
+                System.out.println("Held-out Accuracy: " + model.calculateAccuracy(rows, holdout::isTest) * 100 + "%");
+                model.save(modelFile);
+                System.out.println("Model saved to: " + modelFile);
+            }
+        } catch (IOException e) {
+            System.err.println("Error training out of core: " + e.getMessage());
+        }
+    }
+
+    // Same model selection as main() on the sparse rows of an svmlight file
+    private static void trainSparse(String svmFile, String modelFile) {
+        SparseMatrix.Dataset data;
+        try {
+            data = SparseMatrix.read(svmFile);
+        } catch (IOException e) {
+            System.err.println("Error reading hashed features (run index --hashed first): " + e.getMessage());
+            return;
+        }
+        SparseMatrix X = data.features;
+        int[] y = data.labels;
+        System.out.println("Read " + X.rows() + " rows, " + X.nonZeros() + " nonzeros in " + X.dimension() + " features");
+
+        DataSplit split = DataSplit.stratified(y, 0.8, 42); // Fixed seed for reproducibility
+        double[] learningRates = GridSearch.logScale(0.001, 1, 10);
+        double[] regularizationParams = GridSearch.logScale(0.00001, 0.01, 10);
+        int threads = Runtime.getRuntime().availableProcessors();
+        TrainingOptions options = new TrainingOptions();
+        CrossValidation.Fold[] folds = CrossValidation.folds(y, split.trainRows, 5, true, 42);
+        CrossValidation.Score best = CrossValidation.best(CrossValidation.evaluate(X, y, folds,
+                learningRates, regularizationParams, options, threads));
+
+        System.out.println("Best Learning Rate: " + best.learningRate);
+        System.out.println("Best Regularization Parameter: " + best.regularizationParam);
+        System.out.printf("Cross-validation Accuracy: %.2f%% (variance %.6f)%n", best.mean() * 100, best.variance());
+
+        SVMTest bestModel = new SVMTest(best.learningRate, best.regularizationParam);
+        int epochs = bestModel.trainUntilConverged(X, y, split.trainRows, options);
+        System.out.println("Best model converged after " + epochs + " epochs");
+        System.out.println("Best Model Accuracy: " + bestModel.calculateAccuracy(X, y, split.testRows) * 100 + "%");
+
+        try {
+            bestModel.save(modelFile);
+            System.out.println("Model saved to: " + modelFile);
+        } catch (IOException e) {
+            System.err.println("Error saving model: " + e.getMessage());
+        }
+    }
+
     // Main method
     public static void main(String[] args) {
         String csvFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2.csv"; // Replace with your dataset file path
+        String modelFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/model.bin"; // Trained model, read by SVMPredictor
+        String hashedFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Hashed.svm"; // Written by index --hashed
+        String hashedModelFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/model_hashed.bin";
+
+        // --sparse: train on the hashed n-gram features instead of the stylometric columns
+        if (args.length > 0 && args[0].equals("--sparse")) {
+            trainSparse(hashedFile, hashedModelFile);
+            return;
+        }
+
+        // --out-of-core [float32]: train from a memory-mapped RowStore instead of the heap
+        if (args.length > 0 && args[0].equals("--out-of-core")) {
+            String storeFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2.rows";
+            boolean float32 = args.length > 1 && args[1].equals("float32");
+            trainOutOfCore(csvFile, storeFile, modelFile, float32 ? ColumnFile.Type.FLOAT32 : ColumnFile.Type.FLOAT64);
+            return;
+        }
+
+        // --columnar: train on DataNormalization's binary column file instead of its CSV
+        if (args.length > 0 && args[0].equals("--columnar")) {
+            csvFile = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output2" + ColumnFile.EXTENSION;
+        }
         List<double[]> featureList = new ArrayList<>();
         List<Integer> labelList = new ArrayList<>();
 
-        // Read the dataset
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
-            String str;
-            boolean isHeader = true;
-            while ((str = br.readLine()) != null) {
-                if (isHeader) { // Skip header
-                    isHeader = false;
-                    continue;
-                }
-                String[] values = str.split(",");
-                int label = Integer.parseInt(values[0]);
-                double[] features = new double[values.length - 1];
-                for (int i = 1; i < values.length; i++) {
-                    features[i - 1] = Double.parseDouble(values[i]);
-                }
-                labelList.add(label == 0 ? -1 : 1); // Convert 0/1 to -1/1
+        // Read the dataset (CSV or column file)
+        try (FeatureRows rows = FeatureRows.open(csvFile)) {
+            int featureCount = rows.features();
+            while (rows.next()) {
+                double[] features = new double[featureCount];
+                rows.features(features);
+                labelList.add(rows.label() == 0 ? -1 : 1); // Convert 0/1 to -1/1
                 featureList.add(features);
             }
         } catch (IOException e) {
@@ -102,52 +860,20 @@ public class SVMTest {
         double[][] X = featureList.toArray(new double[0][]);
         int[] y = labelList.stream().mapToInt(i -> i).toArray();
 
-        // Split data into train and test sets (80-20 split) with fixed seed
-        int trainSize = (int) (0.8 * X.length);
-        Random random = new Random(42); // Fixed seed for reproducibility
-        int[] indices = random.ints(0, X.length).distinct().limit(X.length).toArray();
+        double[] learningRates = GridSearch.logScale(0.0001, 1, 10);  // Log scale for learning rate
+        double[] regularizationParams = GridSearch.logScale(0.001, 10, 10);  // Log scale for regularization
+        int threads = Runtime.getRuntime().availableProcessors();
+        TrainingOptions options = new TrainingOptions(); // up to 600 epochs, stops once converged
+        // 80-20 split and 5 folds, fixed seed for reproducibility
+        SVMTest bestModel = selectAndTrain(X, y, learningRates, regularizationParams, options, 0.8, 5, 42, threads);
 
-        double[][] X_train = new double[trainSize][X[0].length];
-        double[][] X_test = new double[X.length - trainSize][X[0].length];
-        int[] y_train = new int[trainSize];
-        int[] y_test = new int[X.length - trainSize];
-
-        for (int i = 0; i < trainSize; i++) {
-            X_train[i] = X[indices[i]];
-            y_train[i] = y[indices[i]];
-        }
-        for (int i = trainSize; i < X.length; i++) {
-            X_test[i - trainSize] = X[indices[i]];
-            y_test[i - trainSize] = y[indices[i]];
-        }
-
-        // Hyperparameter tuning
-        double bestAccuracy = 0;
-        double bestLearningRate = 0;
-        double bestRegularizationParam = 0;
-        for (double lr = 0.0001; lr <= 1; lr *= 10) {  // Log scale for learning rate
-            for (double reg = 0.001; reg <= 10; reg *= 10) {  // Log scale for regularization
-                // Train the model
-                SVMTest svm = new SVMTest(lr, reg);
-                svm.train(X_train, y_train, 600);
-                double accuracy = svm.calculateAccuracy(X_test, y_test);
-                // Update best model if necessary
-                if (accuracy > bestAccuracy) {
-                    bestAccuracy = accuracy;
-                    bestLearningRate = lr;
-                    bestRegularizationParam = reg;
-                }
-            }
+        // Save it so SVMPredictor can score without retraining
+        try {
+            bestModel.save(modelFile);
+            System.out.println("Model saved to: " + modelFile);
+        } catch (IOException e) {
+            System.err.println("Error saving model: " + e.getMessage());
         }
-        
-
-        System.out.println("Best Learning Rate: " + bestLearningRate);
-        System.out.println("Best Regularization Parameter: " + bestRegularizationParam);
-        System.out.println("Best Model Accuracy: " + bestAccuracy * 100 + "%");
-
-        // Train the best model
-        SVMTest bestModel = new SVMTest(bestLearningRate, bestRegularizationParam);
-        bestModel.train(X_train, y_train, 100);
 
         // Get user input for prediction
         Scanner scanner = new Scanner(System.in);
@@ -0,0 +1,114 @@
+import java.io.*;
+
+// Per-feature standardization parameters written by DataNormalization and loaded by the
+// scoring side (Feature), so the two always agree without copying constants by hand.
+//
+// Binary layout (big-endian, DataOutputStream):
+//   int magic 'SCAL', int format version, long created (epoch millis), long rows,
+//   int feature count, then per feature: UTF name, double mean, double std
+public final class Scaler {
+
+    private static final int MAGIC = 0x5343414C; // "SCAL"
+    private static final int VERSION = 1;
+
+    private final String[] names;
+    private final double[] mean;
+    private final double[] std;
+    private final long rows;
+    private final long created;
+
+    private Scaler(String[] names, double[] mean, double[] std, long rows, long created) {
+        this.names = names;
+        this.mean = mean;
+        this.std = std;
+        this.rows = rows;
+        this.created = created;
+    }
+
+    public static Scaler fromStats(String[] names, RunningStats stats) {
+        if (names.length != stats.columns()) {
+            throw new IllegalArgumentException(names.length + " names for " + stats.columns() + " features");
+        }
+        double[] mean = new double[names.length];
+        double[] std = new double[names.length];
+        for (int j = 0; j < names.length; j++) {
+            mean[j] = stats.mean(j);
+            std[j] = stats.stdDev(j);
+        }
+        return new Scaler(names.clone(), mean, std, stats.count(), System.currentTimeMillis());
+    }
+
+    public void save(String filePath) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(created);
+            out.writeLong(rows);
+            out.writeInt(names.length);
+            for (int j = 0; j < names.length; j++) {
+                out.writeUTF(names[j]);
+                out.writeDouble(mean[j]);
+                out.writeDouble(std[j]);
+            }
+        }
+    }
+
+    public static Scaler load(String filePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(filePath + " is not a scaler file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported scaler version " + version + " in " + filePath);
+            }
+            long created = in.readLong();
+            long rows = in.readLong();
+            int features = in.readInt();
+            String[] names = new String[features];
+            double[] mean = new double[features];
+            double[] std = new double[features];
+            for (int j = 0; j < features; j++) {
+                names[j] = in.readUTF();
+                mean[j] = in.readDouble();
+                std[j] = in.readDouble();
+            }
+            return new Scaler(names, mean, std, rows, created);
+        }
+    }
+
+    // Standardize features into out (may be the same array); allocates nothing
+    public void transform(double[] features, double[] out) {
+        if (features.length != mean.length) {
+            throw new IllegalArgumentException("Expected " + mean.length + " features, got " + features.length);
+        }
+        for (int j = 0; j < mean.length; j++) {
+            out[j] = (features[j] - mean[j]) / std[j];
+        }
+    }
+
+    public int features() {
+        return names.length;
+    }
+
+    public String name(int feature) {
+        return names[feature];
+    }
+
+    public double mean(int feature) {
+        return mean[feature];
+    }
+
+    public double std(int feature) {
+        return std[feature];
+    }
+
+    // Number of rows the statistics were computed from
+    public long rows() {
+        return rows;
+    }
+
+    public long created() {
+        return created;
+    }
+}
@@ -0,0 +1,300 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Long-running scoring service on the JDK's built-in HTTP server. Lexicons, scaler and model
+// are loaded once; each request is featurized with ReviewScanner, standardized with the
+// Scaler and scored with the SVM.
+//
+//   POST /score   body: the review text (UTF-8)
+//                 200 {"prediction":"Real","label":1,"margin":0.4211}
+//   GET  /health  200 OK
+//   GET  /metrics Metrics in the Prometheus text format
+//
+// Connections are handled on virtual threads when the runtime has them (a cached pool
+// otherwise); they only read the body, enqueue it and wait. A few batcher threads take
+// everything that is queued at once, up to MAX_BATCH requests, and featurize and score it
+// as one FeatureBlock, so concurrent requests share one pass and an idle server adds no
+// waiting. lingerMicros > 0 lets a batcher wait that long for a batch to fill.
+//
+// Under overload the queue is bounded: a request that finds it full is answered 503 at once,
+// and a request whose caller has already timed out is dropped when the batch is formed
+// instead of being scored for nobody.
+public class ScoringServer {
+
+    // Most requests scored together
+    private static final int MAX_BATCH = 64;
+    // Longest a connection waits for its score before answering 503
+    private static final long TIMEOUT_MILLIS = 2000;
+    // Most requests waiting for a batcher; more are rejected with 503
+    private static final int QUEUE_CAPACITY = 4096;
+
+    // Time from reading a request to its response, including the wait for its batch
+    private static final Metrics.Timer SCORE_TIMER = Metrics.timer("server.score");
+    // Requests turned away because the queue was full
+    private static final Metrics.Counter REJECTED = Metrics.counter("server.rejected");
+    // Requests dropped unscored because their caller had stopped waiting
+    private static final Metrics.Counter EXPIRED = Metrics.counter("server.expired");
+
+    private final Lexicon stopwords;
+    private final Lexicon adjectives;
+    private final Scaler scaler;
+    private final SVMTest model;
+    private final int batchers;
+    private final long lingerNanos;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private HttpServer server;
+    private ExecutorService connections;
+    private Thread[] batcherThreads;
+
+    // One review waiting for its margin
+    private static final class Request {
+        final String review;
+        final long deadline; // System.nanoTime() after which nobody waits for the margin
+        final CompletableFuture<Double> margin = new CompletableFuture<>();
+
+        Request(String review, long deadline) {
+            this.review = review;
+            this.deadline = deadline;
+        }
+
+        // Caller gave up (timed out or was interrupted) or the deadline has passed
+        boolean isExpired(long now) {
+            return margin.isDone() || now - deadline >= 0;
+        }
+    }
+
+    public ScoringServer(Lexicon stopwords, Lexicon adjectives, Scaler scaler, SVMTest model,
+                         int batchers, long lingerMicros) {
+        if (scaler.features() != Feature.FEATURES || model.numFeatures() != Feature.FEATURES) {
+            throw new IllegalArgumentException("Scaler has " + scaler.features() + " features and model "
+                    + model.numFeatures() + ", expected " + Feature.FEATURES);
+        }
+        this.stopwords = stopwords;
+        this.adjectives = adjectives;
+        this.scaler = scaler;
+        this.model = model;
+        this.batchers = Math.max(1, batchers);
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+    }
+
+    public void start(int port) throws IOException {
+        // Responses are small; without TCP_NODELAY Nagle's algorithm can hold them back for
+        // tens of milliseconds. Read once, when the server implementation is first used.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        batcherThreads = new Thread[batchers];
+        for (int b = 0; b < batchers; b++) {
+            batcherThreads[b] = new Thread(this::runBatcher, "scoring-batcher-" + b);
+            batcherThreads[b].setDaemon(true);
+            batcherThreads[b].start();
+        }
+
+        connections = connectionExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(connections);
+        server.createContext("/score", this::handleScore);
+        server.createContext("/health", exchange -> respond(exchange, 200, "OK"));
+        server.createContext("/metrics", Metrics::handle);
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (connections != null) {
+            connections.shutdownNow();
+        }
+        if (batcherThreads != null) {
+            for (Thread batcher : batcherThreads) {
+                batcher.interrupt();
+            }
+        }
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // A virtual thread per connection where available (JDK 21+), else a cached pool
+    private static ExecutorService connectionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handleScore(HttpExchange exchange) throws IOException {
+        long start = SCORE_TIMER.start();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Use POST with the review text as the body");
+                return;
+            }
+            String review = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (review.isBlank()) {
+                respond(exchange, 400, "Empty review");
+                return;
+            }
+
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+            Request request = new Request(review, System.nanoTime() + timeoutNanos);
+            if (!queue.offer(request)) {
+                REJECTED.increment();
+                respond(exchange, 503, "Server overloaded");
+                return;
+            }
+            double margin;
+            try {
+                margin = request.margin.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } finally {
+                // No-op once scored; otherwise tells the batcher nobody is waiting any more
+                request.margin.cancel(false);
+            }
+            int label = margin >= 0 ? 1 : -1;
+            respond(exchange, 200, String.format(Locale.ROOT, "{\"prediction\":\"%s\",\"label\":%d,\"margin\":%.4f}",
+                    label == 1 ? "Real" : "Fake", label, margin));
+            SCORE_TIMER.stop(start);
+        } catch (TimeoutException | CancellationException e) {
+            // Cancelled: the batcher dropped it as expired just before get() timed out
+            respond(exchange, 503, "Scoring timed out");
+        } catch (ExecutionException e) {
+            respond(exchange, 500, "Scoring failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Server shutting down");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                body.startsWith("{") ? "application/json" : "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Take whatever is queued (blocking for the first request), score it, repeat
+    private void runBatcher() {
+        ReviewScanner scanner = new ReviewScanner(stopwords, adjectives);
+        double[] features = new double[Feature.FEATURES];
+        double[] margins = new double[MAX_BATCH];
+        List<Request> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - batch.size());
+                if (lingerNanos > 0) {
+                    long deadline = System.nanoTime() + lingerNanos;
+                    long wait;
+                    while (batch.size() < MAX_BATCH && (wait = deadline - System.nanoTime()) > 0) {
+                        Request next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, MAX_BATCH - batch.size());
+                    }
+                }
+                dropExpired(batch);
+                if (!batch.isEmpty()) {
+                    score(batch, scanner, features, margins);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            for (Request request : batch) {
+                request.margin.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Remove requests nobody is waiting for any more, so capacity goes to live ones
+    private static void dropExpired(List<Request> batch) {
+        long now = System.nanoTime();
+        int kept = 0;
+        for (Request request : batch) {
+            if (request.isExpired(now)) {
+                request.margin.cancel(false);
+                EXPIRED.increment();
+            } else {
+                batch.set(kept++, request);
+            }
+        }
+        batch.subList(kept, batch.size()).clear();
+    }
+
+    private void score(List<Request> batch, ReviewScanner scanner, double[] features, double[] margins) {
+        try {
+            FeatureBlock block = new FeatureBlock(batch.size(), Feature.FEATURES);
+            for (int i = 0; i < batch.size(); i++) {
+                Feature.extractFeatures(scanner, batch.get(i).review, features);
+                scaler.transform(features, features);
+                for (int j = 0; j < features.length; j++) {
+                    block.set(i, j, features[j]);
+                }
+            }
+            model.margins(block, margins);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).margin.complete(margins[i]);
+            }
+        } catch (RuntimeException e) {
+            for (Request request : batch) {
+                request.margin.completeExceptionally(e);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        String adjectivesFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/english-adjectives.txt"; // Adjectives file
+        String stopwordsFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/stopwords.txt"; // Stopwords file
+        String scalerFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/scaler.bin"; // Written by DataNormalization
+        String modelFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/model.bin"; // Written by SVMTest
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        long lingerMicros = args.length > 1 ? Long.parseLong(args[1]) : 0;
+
+        Scaler scaler;
+        SVMTest model;
+        try {
+            scaler = Scaler.load(scalerFilePath);
+            model = SVMTest.load(modelFilePath);
+        } catch (IOException e) {
+            System.err.println("Error reading scaler or model file (run DataNormalization and SVMTest first): " + e.getMessage());
+            return;
+        }
+
+        ScoringServer scoringServer = new ScoringServer(Lexicon.load(stopwordsFilePath), Lexicon.load(adjectivesFilePath),
+                scaler, model, Runtime.getRuntime().availableProcessors(), lingerMicros);
+        try {
+            scoringServer.start(port);
+        } catch (IOException e) {
+            System.err.println("Error starting server: " + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(scoringServer::stop));
+        System.out.println("Scoring reviews on http://localhost:" + scoringServer.port() + "/score");
+    }
+}
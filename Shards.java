@@ -0,0 +1,276 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Inputs that arrive as many files (e.g. one CSV of reviews per day) instead of one. A shard
+// spec is a directory (every file in it), a glob in the file name part (reviews/2024-*.csv),
+// or a manifest. Shards are always taken in file name order, so date-named shards are
+// processed, merged and concatenated chronologically and results do not depend on the
+// order the file system lists them in.
+//
+// A sharded stage writes one output per input shard into an output directory, plus a
+// manifest listing them in order with their row counts. The manifest stands for the
+// combined result: FeatureRows reads a manifest (or its directory) as one table, so later
+// stages never need the shards concatenated into one file.
+//
+// Manifest layout (UTF-8 text, file names relative to the manifest's directory):
+//   # shards <count> rows <total>
+//   <output file> TAB <rows> TAB <bytes> TAB <source shard>
+public final class Shards {
+
+    public static final String MANIFEST = "manifest.txt";
+
+    private Shards() {
+    }
+
+    // Directory, glob or manifest rather than a single file?
+    public static boolean isSharded(String spec) {
+        return isPattern(spec) || Files.isDirectory(Paths.get(spec)) || isManifest(Paths.get(spec));
+    }
+
+    // The shard files of a spec, in name order. A directory holding a manifest stands for the
+    // files it lists; otherwise for every regular, non-hidden file in it. A glob may only use
+    // wildcards in the file name (and is matched before it becomes a Path, since Windows
+    // paths cannot hold them). An existing file whose name merely contains *?[{ is that file.
+    public static List<Path> resolve(String spec) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        if (isPattern(spec)) {
+            int separator = Math.max(spec.lastIndexOf('/'), spec.lastIndexOf(File.separatorChar));
+            String directory = separator < 0 ? "." : spec.substring(0, separator);
+            if (isPattern(directory)) {
+                throw new IOException("Wildcards are only supported in the file name: " + spec);
+            }
+            list(Paths.get(directory), spec.substring(separator + 1), shards);
+        } else {
+            Path path = Paths.get(spec);
+            if (Files.isDirectory(path)) {
+                if (Files.exists(path.resolve(MANIFEST))) {
+                    return Manifest.read(path.resolve(MANIFEST)).files();
+                }
+                list(path, "*", shards);
+            } else if (isManifest(path)) {
+                return Manifest.read(path).files();
+            } else {
+                shards.add(path);
+            }
+        }
+        if (shards.isEmpty()) {
+            throw new IOException("No shards match " + spec);
+        }
+        return shards;
+    }
+
+    // Wildcards, and no file by that literal name
+    private static boolean isPattern(String spec) {
+        if (!isGlob(spec)) {
+            return false;
+        }
+        try {
+            return !Files.exists(Paths.get(spec));
+        } catch (InvalidPathException e) {
+            return true;
+        }
+    }
+
+    private static boolean isGlob(String spec) {
+        for (int i = 0; i < spec.length(); i++) {
+            if ("*?[{".indexOf(spec.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isManifest(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().equals(MANIFEST);
+    }
+
+    private static void list(Path directory, String glob, List<Path> shards) throws IOException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (Files.isRegularFile(file) && !name.startsWith(".") && !name.equals(MANIFEST)
+                        && !name.endsWith(".tmp") && matcher.matches(file.getFileName())) {
+                    shards.add(file);
+                }
+            }
+        }
+        shards.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+    }
+
+    // Output of a shard in outputDirectory: its file name with the extension replaced
+    public static Path outputFor(Path shard, Path outputDirectory, String extension) {
+        String name = shard.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return outputDirectory.resolve((dot > 0 ? name.substring(0, dot) : name) + extension);
+    }
+
+    // Work on one shard, e.g. featurize it into its output or accumulate its statistics
+    public interface ShardTask<R> {
+        R run(Path shard) throws IOException;
+    }
+
+    // Run the task on every shard, up to threads at a time; results in shard order
+    public static <R> List<R> map(List<Path> shards, int threads, ShardTask<R> task) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, shards.size())));
+        try {
+            List<Future<R>> jobs = new ArrayList<>();
+            for (Path shard : shards) {
+                jobs.add(pool.submit(() -> task.run(shard)));
+            }
+            List<R> results = new ArrayList<>();
+            for (int s = 0; s < jobs.size(); s++) {
+                try {
+                    results.add(jobs.get(s).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw new IOException("Shard " + shards.get(s) + ": " + cause.getMessage(), cause);
+                    }
+                    throw new IllegalStateException("Shard " + shards.get(s) + " failed", cause);
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing shards");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Per-shard outputs of a sharded run, in shard order
+    public static final class Manifest {
+
+        public static final class Entry {
+            public final String file;   // relative to the manifest's directory
+            public final long rows;
+            public final long bytes;    // size of the output when it was written
+            public final String source; // the input shard
+
+            public Entry(String file, long rows, long bytes, String source) {
+                this.file = file;
+                this.rows = rows;
+                this.bytes = bytes;
+                this.source = source;
+            }
+
+            // Output of a finished shard, as it is on disk now
+            public static Entry of(Path output, long rows, Path source) throws IOException {
+                return new Entry(output.getFileName().toString(), rows, Files.size(output), source.toString());
+            }
+        }
+
+        private final Path directory;
+        private final List<Entry> entries;
+
+        public Manifest(Path directory, List<Entry> entries) throws IOException {
+            Set<String> files = new HashSet<>();
+            for (Entry entry : entries) {
+                if (!files.add(entry.file)) {
+                    throw new IOException("Two shards write " + entry.file + " in " + directory);
+                }
+            }
+            this.directory = directory;
+            this.entries = new ArrayList<>(entries);
+        }
+
+        // The manifest in a directory, or null if there is none yet
+        public static Manifest readIfExists(Path directory) throws IOException {
+            Path file = directory.resolve(MANIFEST);
+            return Files.exists(file) ? read(file) : null;
+        }
+
+        public static Manifest read(Path file) throws IOException {
+            Path directory = file.toAbsolutePath().getParent();
+            List<Entry> entries = new ArrayList<>();
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split("\t", 4);
+                    if (fields.length != 4) {
+                        throw new IOException("Malformed line in " + file + ": " + line);
+                    }
+                    try {
+                        entries.add(new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed line in " + file + ": " + line);
+                    }
+                }
+            }
+            return new Manifest(directory, entries);
+        }
+
+        // Written to a temporary file and moved into place, so readers never see half of it
+        public void write() throws IOException {
+            Path file = directory.resolve(MANIFEST);
+            Path temp = directory.resolve(MANIFEST + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write("# shards " + entries.size() + " rows " + rows());
+                out.newLine();
+                for (Entry entry : entries) {
+                    out.write(entry.file + "\t" + entry.rows + "\t" + entry.bytes + "\t" + entry.source);
+                    out.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        public List<Entry> entries() {
+            return new ArrayList<>(entries);
+        }
+
+        // Entry for an output file name, or null
+        public Entry entry(String file) {
+            for (Entry entry : entries) {
+                if (entry.file.equals(file)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        // The output files, in shard order
+        public List<Path> files() {
+            List<Path> files = new ArrayList<>();
+            for (Entry entry : entries) {
+                files.add(directory.resolve(entry.file));
+            }
+            return files;
+        }
+
+        public long rows() {
+            long rows = 0;
+            for (Entry entry : entries) {
+                rows += entry.rows;
+            }
+            return rows;
+        }
+
+        // Was this entry's output written from the shard as it is now, and left untouched since?
+        public boolean isCurrent(Entry entry, Path shard) throws IOException {
+            Path output = directory.resolve(entry.file);
+            return entry.source.equals(shard.toString()) && Files.exists(output) && Files.size(output) == entry.bytes
+                    && Files.getLastModifiedTime(output).compareTo(Files.getLastModifiedTime(shard)) > 0;
+        }
+    }
+}
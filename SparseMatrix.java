@@ -0,0 +1,232 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Sparse feature matrix in compressed sparse row (CSR) form: the nonzero entries of row i are
+// indices()/values()[rowStart(i), rowEnd(i)), indices strictly increasing within a row.
+// Three flat arrays for the whole matrix, so a million short rows are not a million objects.
+//
+// On disk this is the svmlight/LIBSVM text format, one row per line with 1-based indices:
+//   <label> <index>:<value> <index>:<value> ...
+// preceded by an optional "# dimension <n>" line that index writes for hashed features.
+public final class SparseMatrix {
+
+    private final int dimension;
+    private final int rows;
+    private final int[] rowStarts; // rows + 1 entries
+    private final int[] indices;
+    private final double[] values;
+
+    private SparseMatrix(int dimension, int rows, int[] rowStarts, int[] indices, double[] values) {
+        this.dimension = dimension;
+        this.rows = rows;
+        this.rowStarts = rowStarts;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public long nonZeros() {
+        return rowStarts[rows];
+    }
+
+    public int rowStart(int row) {
+        return rowStarts[row];
+    }
+
+    public int rowEnd(int row) {
+        return rowStarts[row + 1];
+    }
+
+    // Backing column index array, shared by all rows
+    public int[] indices() {
+        return indices;
+    }
+
+    // Backing value array, parallel to indices()
+    public double[] values() {
+        return values;
+    }
+
+    // Sum of weights[index] * value over the nonzero entries of the row
+    public double dot(int row, double[] weights) {
+        double result = 0;
+        for (int k = rowStarts[row]; k < rowStarts[row + 1]; k++) {
+            result += weights[indices[k]] * values[k];
+        }
+        return result;
+    }
+
+    public SparseVector row(int row) {
+        int from = rowStarts[row];
+        int to = rowStarts[row + 1];
+        return new SparseVector(dimension, Arrays.copyOfRange(indices, from, to), Arrays.copyOfRange(values, from, to));
+    }
+
+    // Appends rows into growing flat arrays
+    public static final class Builder {
+        private final int dimension;
+        private int rows;
+        private int[] rowStarts = new int[1024];
+        private int[] indices = new int[8192];
+        private double[] values = new double[8192];
+
+        public Builder(int dimension) {
+            this.dimension = dimension;
+        }
+
+        public Builder add(SparseVector row) {
+            if (row.dimension() != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + row.dimension());
+            }
+            int start = rowStarts[rows];
+            ensureCapacity(start + row.nonZeros());
+            for (int k = 0; k < row.nonZeros(); k++) {
+                indices[start + k] = row.index(k);
+                values[start + k] = row.value(k);
+            }
+            endRow(start + row.nonZeros());
+            return this;
+        }
+
+        public SparseMatrix build() {
+            int nonZeros = rowStarts[rows];
+            return new SparseMatrix(dimension, rows, Arrays.copyOf(rowStarts, rows + 1),
+                    Arrays.copyOf(indices, nonZeros), Arrays.copyOf(values, nonZeros));
+        }
+
+        private void ensureCapacity(int nonZeros) {
+            if (nonZeros > indices.length) {
+                int capacity = Math.max(nonZeros, indices.length * 2);
+                indices = Arrays.copyOf(indices, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+        }
+
+        private void endRow(int end) {
+            if (rows + 2 > rowStarts.length) {
+                rowStarts = Arrays.copyOf(rowStarts, rowStarts.length * 2);
+            }
+            rowStarts[++rows] = end;
+        }
+    }
+
+    // Rows of an svmlight file and their labels, converted from 0/1 to -1/1
+    public static final class Dataset {
+        public final SparseMatrix features;
+        public final int[] labels;
+
+        Dataset(SparseMatrix features, int[] labels) {
+            this.features = features;
+            this.labels = labels;
+        }
+    }
+
+    // Read an svmlight file. The dimension is taken from its "# dimension" line, else from
+    // the largest index. Parsed by hand: at a few hundred entries per row, String.split and
+    // boxing would dominate the load time.
+    public static Dataset read(String filePath) throws IOException {
+        int declaredDimension = -1;
+        int maxIndex = -1;
+        int[] labels = new int[1024];
+        Builder builder = null;
+        int[] rowIndices = new int[256];
+        double[] rowValues = new double[256];
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(filePath),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.startsWith("#")) {
+                    String[] parts = line.substring(1).trim().split("\\s+");
+                    if (parts.length == 2 && parts[0].equals("dimension")) {
+                        declaredDimension = Integer.parseInt(parts[1]);
+                    }
+                    continue;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (builder == null) {
+                    // Indices are checked against the dimension once all rows are read
+                    builder = new Builder(Integer.MAX_VALUE);
+                }
+
+                int pos = skipSpaces(line, 0);
+                int end = nextSpace(line, pos);
+                int label = (int) Double.parseDouble(line.substring(pos, end));
+                int entries = 0;
+                int previous = -1;
+                pos = skipSpaces(line, end);
+                while (pos < line.length()) {
+                    end = nextSpace(line, pos);
+                    int colon = line.indexOf(':', pos);
+                    if (colon < 0 || colon >= end) {
+                        throw new IOException("Malformed entry on line " + lineNumber + " of " + filePath);
+                    }
+                    int index = Integer.parseInt(line, pos, colon, 10) - 1;
+                    if (index < 0) {
+                        throw new IOException("Index " + (index + 1) + " out of range (indices start at 1) on line "
+                                + lineNumber + " of " + filePath);
+                    }
+                    if (index <= previous) {
+                        throw new IOException("Indices not increasing on line " + lineNumber + " of " + filePath);
+                    }
+                    if (entries == rowIndices.length) {
+                        rowIndices = Arrays.copyOf(rowIndices, entries * 2);
+                        rowValues = Arrays.copyOf(rowValues, entries * 2);
+                    }
+                    rowIndices[entries] = index;
+                    rowValues[entries] = Double.parseDouble(line.substring(colon + 1, end));
+                    entries++;
+                    previous = index;
+                    pos = skipSpaces(line, end);
+                }
+                maxIndex = Math.max(maxIndex, previous);
+
+                if (builder.rows == labels.length) {
+                    labels = Arrays.copyOf(labels, labels.length * 2);
+                }
+                labels[builder.rows] = label > 0 ? 1 : -1; // Convert 0/1 (or -1/1) to -1/1
+                int start = builder.rowStarts[builder.rows];
+                builder.ensureCapacity(start + entries);
+                System.arraycopy(rowIndices, 0, builder.indices, start, entries);
+                System.arraycopy(rowValues, 0, builder.values, start, entries);
+                builder.endRow(start + entries);
+            }
+        }
+
+        int dimension = declaredDimension >= 0 ? declaredDimension : maxIndex + 1;
+        if (maxIndex >= dimension) {
+            throw new IOException("Index " + (maxIndex + 1) + " exceeds dimension " + dimension + " in " + filePath);
+        }
+        if (builder == null) {
+            return new Dataset(new Builder(dimension).build(), new int[0]);
+        }
+        SparseMatrix all = builder.build();
+        SparseMatrix features = new SparseMatrix(dimension, all.rows, all.rowStarts, all.indices, all.values);
+        return new Dataset(features, Arrays.copyOf(labels, all.rows));
+    }
+
+    private static int skipSpaces(String line, int pos) {
+        while (pos < line.length() && (line.charAt(pos) == ' ' || line.charAt(pos) == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int nextSpace(String line, int pos) {
+        while (pos < line.length() && line.charAt(pos) != ' ' && line.charAt(pos) != '\t') {
+            pos++;
+        }
+        return pos;
+    }
+}
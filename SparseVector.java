@@ -0,0 +1,56 @@
+import java.util.Arrays;
+
+// Sparse feature vector: the nonzero entries only, as parallel arrays of strictly increasing
+// indices and their values. A dot product with a dense weight vector costs O(nnz), however
+// large the feature space.
+public final class SparseVector {
+
+    private final int dimension;
+    private final int[] indices;
+    private final double[] values;
+
+    // Takes ownership of the arrays; indices must be strictly increasing and below dimension
+    public SparseVector(int dimension, int[] indices, double[] values) {
+        if (indices.length != values.length) {
+            throw new IllegalArgumentException(indices.length + " indices but " + values.length + " values");
+        }
+        for (int k = 0; k < indices.length; k++) {
+            if (indices[k] < 0 || indices[k] >= dimension || (k > 0 && indices[k] <= indices[k - 1])) {
+                throw new IllegalArgumentException("Index " + indices[k] + " out of order or outside [0, " + dimension + ")");
+            }
+        }
+        this.dimension = dimension;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int nonZeros() {
+        return indices.length;
+    }
+
+    public int index(int k) {
+        return indices[k];
+    }
+
+    public double value(int k) {
+        return values[k];
+    }
+
+    // Sum of weights[index] * value over the nonzero entries
+    public double dot(double[] weights) {
+        double result = 0;
+        for (int k = 0; k < indices.length; k++) {
+            result += weights[indices[k]] * values[k];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SparseVector(" + dimension + ", " + Arrays.toString(indices) + ", " + Arrays.toString(values) + ")";
+    }
+}
@@ -0,0 +1,260 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+// Entry points into the application classes. They live in the default package, which
+// cannot be imported from a named package (and JMH refuses benchmarks in the default
+// package), so each one is bound once to a constant MethodHandle with the application
+// types erased to Object. invokeExact through a static final handle is inlined by the JIT
+// like a direct call.
+final class App {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> LEXICON = type("Lexicon");
+    private static final Class<?> CSV_READER = type("CsvReader");
+    private static final Class<?> REVIEW_SCANNER = type("ReviewScanner");
+    private static final Class<?> SVM = type("SVMTest");
+
+    private static final MethodHandle LOAD_LEXICON =
+            staticMethod("Lexicon", "load", LEXICON, String.class);
+    private static final MethodHandle FLESCH_READING_EASE =
+            staticMethod("index", "calculateFleschReadingEase", double.class, String.class);
+    private static final MethodHandle PAUSALITY =
+            staticMethod("index", "calculatePausality", int.class, String.class, LEXICON);
+    private static final MethodHandle STANDARDIZE_DATA =
+            staticMethod("DataNormalization", "standardizeData", double[][].class, double[][].class);
+
+    private static final MethodHandle NEW_SCANNER = constructor(REVIEW_SCANNER, LEXICON, LEXICON);
+    private static final MethodHandle SCAN =
+            virtualMethod(REVIEW_SCANNER, "scan", REVIEW_SCANNER, CharSequence.class);
+    private static final MethodHandle SCANNER_READING_EASE =
+            virtualMethod(REVIEW_SCANNER, "fleschReadingEase", double.class);
+    private static final MethodHandle SCANNER_PAUSALITY =
+            virtualMethod(REVIEW_SCANNER, "pausality", int.class);
+
+    private static final MethodHandle NEW_SVM = constructor(SVM, double.class, double.class);
+    private static final MethodHandle TRAIN =
+            virtualMethod(SVM, "train", void.class, double[][].class, int[].class, int.class);
+    private static final MethodHandle PREDICT = virtualMethod(SVM, "predict", int.class, double[].class);
+
+    private static final MethodHandle OPEN_CSV = staticMethod("CsvReader", "open", CSV_READER, String.class);
+    private static final MethodHandle CSV_NEXT = virtualMethod(CSV_READER, "next", boolean.class);
+    private static final MethodHandle CSV_FIELD_COUNT = virtualMethod(CSV_READER, "fieldCount", int.class);
+    private static final MethodHandle CSV_STRING =
+            virtualMethod(CSV_READER, "stringField", String.class, int.class);
+    private static final MethodHandle CSV_DOUBLE =
+            virtualMethod(CSV_READER, "doubleField", double.class, int.class);
+    private static final MethodHandle CSV_CLOSE = virtualMethod(CSV_READER, "close", void.class);
+
+    private App() {
+    }
+
+    static Object loadLexicon(String path) {
+        try {
+            return (Object) LOAD_LEXICON.invokeExact(path);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static double fleschReadingEase(String text) {
+        try {
+            return (double) FLESCH_READING_EASE.invokeExact(text);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static int pausality(String review, Object stopwords) {
+        try {
+            return (int) PAUSALITY.invokeExact(review, stopwords);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static double[][] standardizeData(double[][] data) {
+        try {
+            return (double[][]) STANDARDIZE_DATA.invokeExact(data);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object newScanner(Object stopwords, Object adjectives) {
+        try {
+            return (Object) NEW_SCANNER.invokeExact(stopwords, adjectives);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    // Returns the scanner itself, holding the review's counts
+    static Object scan(Object scanner, CharSequence review) {
+        try {
+            return (Object) SCAN.invokeExact(scanner, review);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static double scannerReadingEase(Object scanner) {
+        try {
+            return (double) SCANNER_READING_EASE.invokeExact(scanner);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static int scannerPausality(Object scanner) {
+        try {
+            return (int) SCANNER_PAUSALITY.invokeExact(scanner);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static Object newSvm(double learningRate, double regularizationParam) {
+        try {
+            return (Object) NEW_SVM.invokeExact(learningRate, regularizationParam);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static void train(Object svm, double[][] X, int[] y, int epochs) {
+        try {
+            TRAIN.invokeExact(svm, X, y, epochs);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    static int predict(Object svm, double[] x) {
+        try {
+            return (int) PREDICT.invokeExact(svm, x);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    // Minimal reading interface over the application's CsvReader, for loading fixtures
+    static final class Csv implements AutoCloseable {
+        private final Object reader;
+
+        Csv(String path) {
+            try {
+                reader = (Object) OPEN_CSV.invokeExact(path);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        boolean next() {
+            try {
+                return (boolean) CSV_NEXT.invokeExact(reader);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        int fieldCount() {
+            try {
+                return (int) CSV_FIELD_COUNT.invokeExact(reader);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        String string(int field) {
+            try {
+                return (String) CSV_STRING.invokeExact(reader, field);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        double number(int field) {
+            try {
+                return (double) CSV_DOUBLE.invokeExact(reader, field);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                CSV_CLOSE.invokeExact(reader);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class " + name + " is not on the classpath", e);
+        }
+    }
+
+    private static MethodHandle staticMethod(String owner, String name, Class<?> returnType, Class<?>... params) {
+        try {
+            MethodHandle handle = LOOKUP.findStatic(type(owner), name, MethodType.methodType(returnType, params));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No " + owner + "." + name, e);
+        }
+    }
+
+    private static MethodHandle virtualMethod(Class<?> owner, String name, Class<?> returnType, Class<?>... params) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(owner, name, MethodType.methodType(returnType, params));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No " + owner.getName() + "." + name, e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... params) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(owner, MethodType.methodType(void.class, params));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No " + owner.getName() + " constructor", e);
+        }
+    }
+
+    // Replace the default-package types, which callers cannot name, with Object
+    private static MethodType erase(MethodType type) {
+        MethodType erased = type;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationType(type.parameterType(i))) {
+                erased = erased.changeParameterType(i, Object.class);
+            }
+        }
+        if (isApplicationType(type.returnType())) {
+            erased = erased.changeReturnType(Object.class);
+        }
+        return erased;
+    }
+
+    private static boolean isApplicationType(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+// Entry point of benchmarks.jar: the standard JMH command line, with the GC profiler always
+// on so every result carries its allocation rate (gc.alloc.rate, gc.alloc.rate.norm)
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (!hasGcProfiler(commandLine)) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+
+    // -prof gc given explicitly (possibly with options); adding it again would run it twice
+    private static boolean hasGcProfiler(Options options) {
+        for (ProfilerConfig profiler : options.getProfilers()) {
+            String name = profiler.getKlass();
+            if (name.equals("gc") || name.equals(GCProfiler.class.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,119 @@
+package bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Benchmark inputs. "dataset" is the reviews of OG_Dataset.csv; the synthetic corpora are
+// scaled-up variants built from the dataset's own vocabulary with a fixed seed, so every
+// run measures the same text.
+final class Corpus {
+
+    // Data directory: -Dcritics.data, by default the repository root when run from bench/
+    static final String DATA_DIR = System.getProperty("critics.data", "..");
+
+    // Words per synthetic review, by corpus name
+    private static final String[] SYNTHETIC = {"short", "medium", "long"};
+    private static final int[] SYNTHETIC_WORDS = {20, 200, 2000};
+    private static final int SYNTHETIC_REVIEWS = 1000;
+
+    private Corpus() {
+    }
+
+    static String path(String fileName) {
+        return new File(DATA_DIR, fileName).getPath();
+    }
+
+    // Reviews of the named corpus: dataset, short, medium or long
+    static String[] reviews(String corpus) {
+        String[] dataset = datasetReviews();
+        if (corpus.equals("dataset")) {
+            return dataset;
+        }
+        for (int c = 0; c < SYNTHETIC.length; c++) {
+            if (SYNTHETIC[c].equals(corpus)) {
+                return synthetic(dataset, SYNTHETIC_REVIEWS, SYNTHETIC_WORDS[c], 42);
+            }
+        }
+        throw new IllegalArgumentException("Unknown corpus " + corpus);
+    }
+
+    static String[] datasetReviews() {
+        List<String> reviews = new ArrayList<>();
+        try (App.Csv csv = new App.Csv(path("OG_Dataset.csv"))) {
+            csv.next(); // Skip header
+            while (csv.next()) {
+                if (csv.fieldCount() >= 2) {
+                    reviews.add(csv.string(0));
+                }
+            }
+        }
+        return reviews.toArray(new String[0]);
+    }
+
+    // Rows of a numeric CSV with a header, all columns
+    static double[][] numericRows(String fileName) {
+        List<double[]> rows = new ArrayList<>();
+        try (App.Csv csv = new App.Csv(path(fileName))) {
+            csv.next(); // Skip header
+            while (csv.next()) {
+                double[] row = new double[csv.fieldCount()];
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = csv.number(j);
+                }
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new double[0][]);
+    }
+
+    // Rows of source resampled with replacement and jittered, to scale a small table up
+    static double[][] scaleUp(double[][] source, int rows, long seed) {
+        Random random = new Random(seed);
+        double[][] scaled = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            double[] row = source[random.nextInt(source.length)].clone();
+            for (int j = 0; j < row.length; j++) {
+                row[j] += 0.01 * random.nextGaussian();
+            }
+            scaled[i] = row;
+        }
+        return scaled;
+    }
+
+    // Reviews of wordsPerReview words drawn from the dataset's tokens, in sentences of 5-20 words
+    private static String[] synthetic(String[] dataset, int reviews, int wordsPerReview, long seed) {
+        List<String> vocabulary = new ArrayList<>();
+        for (String review : dataset) {
+            for (String word : review.split("\\s+")) {
+                String token = word.replaceAll("[^\\p{L}\\p{N}']", "");
+                if (!token.isEmpty()) {
+                    vocabulary.add(token);
+                }
+            }
+        }
+
+        Random random = new Random(seed);
+        String[] corpus = new String[reviews];
+        StringBuilder review = new StringBuilder();
+        for (int r = 0; r < reviews; r++) {
+            review.setLength(0);
+            int sentenceLeft = 5 + random.nextInt(16);
+            for (int w = 0; w < wordsPerReview; w++) {
+                if (w > 0) {
+                    review.append(' ');
+                }
+                review.append(vocabulary.get(random.nextInt(vocabulary.size())));
+                if (--sentenceLeft == 0 || w == wordsPerReview - 1) {
+                    review.append(random.nextInt(4) == 0 ? '!' : '.');
+                    sentenceLeft = 5 + random.nextInt(16);
+                } else if (random.nextInt(10) == 0) {
+                    review.append(',');
+                }
+            }
+            corpus[r] = review.toString();
+        }
+        return corpus;
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Per-review featurization: one operation is one review, cycling through the corpus.
+// The index.* methods are the per-feature extractors; scan is the fused ReviewScanner pass
+// that processDataset runs, computing every feature at once.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FeaturizationBenchmark {
+
+    @Param({"dataset", "short", "medium", "long"})
+    public String corpus;
+
+    private String[] reviews;
+    private Object stopwords;
+    private Object scanner;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        reviews = Corpus.reviews(corpus);
+        stopwords = App.loadLexicon(Corpus.path("stopwords.txt"));
+        scanner = App.newScanner(stopwords, App.loadLexicon(Corpus.path("english-adjectives.txt")));
+    }
+
+    private String nextReview() {
+        String review = reviews[next];
+        next = next + 1 == reviews.length ? 0 : next + 1;
+        return review;
+    }
+
+    @Benchmark
+    public double fleschReadingEase() {
+        return App.fleschReadingEase(nextReview());
+    }
+
+    @Benchmark
+    public int pausality() {
+        return App.pausality(nextReview(), stopwords);
+    }
+
+    @Benchmark
+    public double scan() {
+        Object scanned = App.scan(scanner, nextReview());
+        return App.scannerReadingEase(scanned) + App.scannerPausality(scanned);
+    }
+}
@@ -0,0 +1,56 @@
+package bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// DataNormalization.standardizeData over the featurized dataset and scaled-up copies of it.
+// One operation standardizes the whole table.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NormalizationBenchmark {
+
+    // "dataset" is preprocessed_Output2.csv as is; numbers are resampled row counts
+    @Param({"dataset", "10000", "1000000"})
+    public String rows;
+
+    private double[][] data;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        double[][] features = Corpus.numericRows("preprocessed_Output2.csv");
+        data = rows.equals("dataset") ? features : Corpus.scaleUp(features, Integer.parseInt(rows), 42);
+
+        // standardizeData prints the mean and standard deviation of every column
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public double[][] standardizeData() {
+        return App.standardizeData(data);
+    }
+}
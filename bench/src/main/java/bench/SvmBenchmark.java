@@ -0,0 +1,70 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SVMTest.train (one operation is a full training run) and SVMTest.predict (one operation
+// is one row) on the standardized features of preprocessed_Output2.csv: column 0 is the
+// 0/1 label, converted to -1/1 as SVMTest.main does, the rest are features.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SvmBenchmark {
+
+    // "dataset" is the file as is; numbers are resampled row counts
+    @Param({"dataset", "10000", "100000"})
+    public String rows;
+
+    @Param({"10"})
+    public int epochs;
+
+    private double[][] X;
+    private int[] y;
+    private Object model;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        double[][] table = Corpus.numericRows("preprocessed_Output2.csv");
+        if (!rows.equals("dataset")) {
+            table = Corpus.scaleUp(table, Integer.parseInt(rows), 42);
+        }
+        X = new double[table.length][];
+        y = new int[table.length];
+        for (int i = 0; i < table.length; i++) {
+            y[i] = table[i][0] >= 0.5 ? 1 : -1;
+            X[i] = Arrays.copyOfRange(table[i], 1, table[i].length);
+        }
+        model = App.newSvm(0.1, 0.01);
+        App.train(model, X, y, epochs);
+    }
+
+    @Benchmark
+    public Object train() {
+        Object svm = App.newSvm(0.1, 0.01);
+        App.train(svm, X, y, epochs);
+        return svm;
+    }
+
+    @Benchmark
+    public int predict() {
+        double[] x = X[next];
+        next = next + 1 == X.length ? 0 : next + 1;
+        return App.predict(model, x);
+    }
+}
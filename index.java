@@ -1,24 +1,45 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 public class index {
 
+    // Reviews per unit of work handed to a featurization worker
+    private static final int BATCH_SIZE = 512;
+
+    private static final String OUTPUT_HEADER = "real,pausality,lexical_density,readability,adjective_count\n";
+    // The same columns in a ColumnFile, at full precision
+    private static final String[] OUTPUT_COLUMNS = {"real", "pausality", "lexical_density", "readability", "adjective_count"};
+    private static final ColumnFile.Type[] OUTPUT_TYPES = {ColumnFile.Type.INT32, ColumnFile.Type.FLOAT64,
+            ColumnFile.Type.FLOAT64, ColumnFile.Type.FLOAT64, ColumnFile.Type.INT32};
+
+    // Turns one review and its label into an output row (a CSV line, or the values of a
+    // ColumnFile row). Instances keep scratch state, so every thread gets its own from a Supplier.
+    private interface RowFeaturizer<T> {
+        T featurize(CharSequence review, int label) throws IOException;
+    }
+
+    // Where output rows go, in input order (package-private so Pipeline can keep them in memory)
+    interface RowSink<T> {
+        void write(T row) throws IOException;
+    }
+
+    // Time spent handing each output row to its sink
+    private static final Metrics.Timer WRITE_TIMER = Metrics.timer("output.write");
+
     // Load stopwords from a file
-    private static Set<String> loadStopwords(String filePath) {
-        Set<String> stopwords = new HashSet<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                stopwords.add(line.trim().toLowerCase());
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading stopwords file: " + e.getMessage());
-        }
-        return stopwords;
+    private static Lexicon loadStopwords(String filePath) {
+        return Lexicon.load(filePath);
     }
 
     // PAUSALITY: Calculate pauses based on stopwords
-    public static int calculatePausality(String review, Set<String> stopwords) {
+    public static int calculatePausality(String review, Lexicon stopwords) {
+        long start = ExtractorTimers.PAUSALITY.start();
         int pauseCount = 0;
         String[] words = review.toLowerCase().split("\\W+"); // Split on non-word characters
 
@@ -28,11 +49,13 @@ public class index {
             }
         }
 
+        ExtractorTimers.PAUSALITY.stop(start);
         return pauseCount;
     }
 
     // CONTENT DIVERSITY
     public static double calculateTypeTokenRatio(String review) {
+        long start = ExtractorTimers.TYPE_TOKEN.start();
         String[] words = review.toLowerCase().split("\\W+"); // Split on non-word characters
         Set<String> uniqueWords = new HashSet<>();
         for (String word : words) {
@@ -40,11 +63,12 @@ public class index {
                 uniqueWords.add(word);
             }
         }
+        ExtractorTimers.TYPE_TOKEN.stop(start);
         return (double) uniqueWords.size() / words.length;
     }
 
     public static double calculateLexicalDensity(String review) {
-        //System.out.println(review);
+        long start = ExtractorTimers.LEXICAL_DENSITY.start();
         String[] words = review.toLowerCase().split("\\W+"); // Split on non-word characters
         int lexicalWordCount = 0;
 
@@ -54,19 +78,22 @@ public class index {
                 lexicalWordCount++;
             }
         }
-        //System.out.println((double) lexicalWordCount / words.length);
+        ExtractorTimers.LEXICAL_DENSITY.stop(start);
         return (double) lexicalWordCount / words.length;
     }
 
     // READABILITY USING FRE
     public static double calculateFleschReadingEase(String text) {
+        long start = ExtractorTimers.FLESCH.start();
         int totalSentences = countSentences(text);
         int totalWords = countWords(text);
         int totalSyllables = countSyllables(text);
 
         // Flesch Reading Ease formula
-        return 206.835 - 1.015 * ((double) totalWords / totalSentences)
+        double score = 206.835 - 1.015 * ((double) totalWords / totalSentences)
                         - 84.6 * ((double) totalSyllables / totalWords);
+        ExtractorTimers.FLESCH.stop(start);
+        return score;
     }
 
     private static int countSentences(String text) {
@@ -78,12 +105,14 @@ public class index {
     }
 
     private static int countSyllables(String text) {
+        long start = ExtractorTimers.SYLLABLES.start();
         String[] words = text.toLowerCase().split("\\s+");
         int syllableCount = 0;
 
         for (String word : words) {
             syllableCount += countSyllablesInWord(word);
         }
+        ExtractorTimers.SYLLABLES.stop(start);
         return syllableCount;
     }
 
@@ -102,89 +131,482 @@ public class index {
         return Math.max(count, 1);
     }
 
-    private static Set<String> loadAdjectives(String filePath) {
-        Set<String> adjectives = new HashSet<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Add each adjective to the set (convert to lowercase for case-insensitive comparison)
-                adjectives.add(line.trim().toLowerCase());
-            }
-        } catch (IOException e) {
-            System.err.println("Error reading adjectives file: " + e.getMessage());
-        }
-        return adjectives;
+    private static Lexicon loadAdjectives(String filePath) {
+        return Lexicon.load(filePath);
     }
 
-    private static List<String> findAdjectivesInReview(String review, Set<String> adjectives) {
+    private static List<String> findAdjectivesInReview(String review, Lexicon adjectives) {
+        long start = ExtractorTimers.ADJECTIVES.start();
         List<String> foundAdjectives = new ArrayList<>();
         String[] words = review.toLowerCase().split("\\W+");
 
-        // Check each word against the adjectives set
+        // Check each word against the adjectives lexicon
         for (String word : words) {
             if (adjectives.contains(word)) {
                 foundAdjectives.add(word);
             }
         }
+        ExtractorTimers.ADJECTIVES.stop(start);
         return foundAdjectives;
     }
 
     // Function to process the dataset
-    public static void processDataset(String inputFilePath, String outputFilePath, Set<String> adjectives, Set<String> stopwords) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFilePath));
+    public static void processDataset(String inputFilePath, String outputFilePath, Lexicon adjectives, Lexicon stopwords) {
+        processDataset(inputFilePath, outputFilePath, adjectives, stopwords, 1);
+    }
+
+    // Process the dataset with a pool of featurization workers; output rows keep the input order
+    public static void processDataset(String inputFilePath, String outputFilePath, Lexicon adjectives, Lexicon stopwords, int threads) {
+        processDataset(inputFilePath, outputFilePath, adjectives, stopwords, threads, null);
+    }
+
+    // Same, looking every review up in the feature cache (may be null) before scanning it.
+    // An output path ending in ColumnFile.EXTENSION gets a binary column file instead of CSV.
+    public static void processDataset(String inputFilePath, String outputFilePath, Lexicon adjectives, Lexicon stopwords,
+                                      int threads, FeatureCache cache) {
+        if (outputFilePath.endsWith(ColumnFile.EXTENSION)) {
+            try (CsvReader reader = CsvReader.open(inputFilePath);
+                 ColumnFile.Writer writer = ColumnFile.create(outputFilePath, OUTPUT_COLUMNS, OUTPUT_TYPES)) {
+                featurizeRows(reader, writer::writeRow, stylometricValues(adjectives, stopwords, cache), threads);
+                writer.commit();
+            } catch (IOException e) {
+                System.err.println("Error processing dataset: " + e.getMessage());
+            }
+            return;
+        }
+        try (CsvReader reader = CsvReader.open(inputFilePath);
              BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilePath))) {
 
             // Write headers to the output file
-            writer.write("real,pausality,lexical_density,readability,adjective_count\n");
+            writer.write(OUTPUT_HEADER);
+            featurizeRows(reader, writer::write, stylometric(adjectives, stopwords, cache), threads);
+        } catch (IOException e) {
+            System.err.println("Error processing dataset: " + e.getMessage());
+        }
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Skip header line if present
-                if (line.startsWith("Review")) {
-                    continue;
-                }
+    // Featurize the input straight into sink instead of a file: one row of OUTPUT_COLUMNS
+    // values (label first, unrounded) per review, in input order. Returns the number of reviews.
+    static long featurizeInto(String inputFilePath, Lexicon adjectives, Lexicon stopwords, int threads,
+                              FeatureCache cache, RowSink<double[]> sink) throws IOException {
+        try (CsvReader reader = CsvReader.open(inputFilePath)) {
+            return featurizeRows(reader, sink, stylometricValues(adjectives, stopwords, cache), threads);
+        }
+    }
+
+    // Hashed n-gram mode: instead of the stylometric columns, write every review's unigram and
+    // bigram counts hashed into 2^bits features (see NgramHasher), in the svmlight format that
+    // SparseMatrix.read() loads: "<real> <index>:<value> ...", 1-based indices.
+    public static void processDatasetHashed(String inputFilePath, String outputFilePath, int bits, int threads) {
+        try {
+            // Checks bits before the output is created, so a bad value leaves no file behind
+            int dimension = new NgramHasher(bits).dimension();
+            try (CsvReader reader = CsvReader.open(inputFilePath);
+                 BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilePath))) {
+
+                writer.write("# dimension " + dimension + "\n");
+                featurizeRows(reader, writer::write, () -> {
+                    NgramHasher hasher = new NgramHasher(bits);
+                    return (review, label) -> hashedRow(hasher.hash(review), label);
+                }, threads);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error processing dataset: " + e.getMessage());
+        }
+    }
 
-                // Split by comma (assuming CSV format)
-                String[] parts = line.split(",", 2);
-                String review = parts[0].trim();
-                String label = parts[1].trim();
-
-                // Process the review to extract features
-                int pausality = calculatePausality(review, stopwords);
-                double typeTokenRatio = calculateTypeTokenRatio(review);
-                double lexicalDensity = calculateLexicalDensity(review);
-                double readability = calculateFleschReadingEase(review);
-                List<String> foundAdjectives = findAdjectivesInReview(review, adjectives);
-
-                // Prepare the output line with features
-                String outputLine = String.format("%d,%.2f,%.2f,%.2f,%d\n",
-                        Integer.parseInt(label),            // 'real' column value (0 or 1)
-                        pausality / 6.7,                    // Pausality (scaled float)
-                        lexicalDensity,                     // Lexical density (float)
-                        readability / 6.7,                  // Readability (scaled float)
-                        foundAdjectives.size()              // Number of adjectives (integer)
-                );
-
-                // Write to the output file
-                writer.write(outputLine);
+    // Featurize only the reviews appended to the input since the last run and append them to
+    // the output. The checkpoint file records the input byte offset reached; without a usable
+    // checkpoint (first run, or either file changed other than by appending) everything is
+    // processed from the start. A last record without its line break may still be being
+    // written: it is taken only if it parses as complete (closed quotes, review and label),
+    // otherwise it is left for the next run with a warning.
+    public static void processDatasetIncrementally(String inputFilePath, String outputFilePath, Lexicon adjectives,
+                                                   Lexicon stopwords, int threads, FeatureCache cache,
+                                                   String checkpointFilePath) {
+        try {
+            Checkpoint checkpoint = Checkpoint.load(checkpointFilePath);
+            boolean resume = checkpoint != null && checkpoint.isValidFor(inputFilePath, outputFilePath);
+            long rows;
+            long offset;
+            try (CsvReader reader = CsvReader.open(inputFilePath, resume ? checkpoint.inputOffset : 0)
+                    .completeRecordsOnly(2);
+                 BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilePath, resume))) {
+                if (!resume) {
+                    writer.write(OUTPUT_HEADER);
+                }
+                rows = featurizeRows(reader, writer::write, stylometric(adjectives, stopwords, cache), threads);
+                offset = reader.position();
+                if (reader.heldBack()) {
+                    System.err.println("Warning: last record of " + inputFilePath + " at byte " + offset
+                            + " is incomplete, leaving it for the next run");
+                }
             }
+            long total = resume ? checkpoint.rows + rows : rows;
+            Checkpoint.of(inputFilePath, offset, outputFilePath, total, null).save(checkpointFilePath);
+            System.out.println((resume ? "Appended " : "Processed ") + rows + " reviews (" + total + " in total)");
         } catch (IOException e) {
             System.err.println("Error processing dataset: " + e.getMessage());
         }
     }
 
+    // Sharded mode: featurize every input shard of inputSpec (a directory or glob, see Shards)
+    // into its own output in outputDirectory, CSV or ColumnFile, and list them in a manifest
+    // there that the later stages read as one table. Shards are featurized concurrently, the
+    // threads split between them. A shard whose output in the previous manifest is newer
+    // than the shard and untouched since is not featurized again, so a daily run only pays
+    // for the new shards.
+    public static void processShards(String inputSpec, String outputDirectory, Lexicon adjectives, Lexicon stopwords,
+                                     int threads, FeatureCache cache, boolean columnar) {
+        try {
+            List<Path> shards = Shards.resolve(inputSpec);
+            Path directory = Paths.get(outputDirectory);
+            Files.createDirectories(directory);
+            Shards.Manifest previous = Shards.Manifest.readIfExists(directory);
+            String extension = columnar ? ColumnFile.EXTENSION : ".csv";
+            int shardThreads = Math.max(1, threads / shards.size());
+
+            long start = System.nanoTime();
+            List<Shards.Manifest.Entry> entries = Shards.map(shards, threads, shard -> {
+                Path output = Shards.outputFor(shard, directory, extension);
+                Shards.Manifest.Entry done = previous == null ? null : previous.entry(output.getFileName().toString());
+                if (done != null && previous.isCurrent(done, shard)) {
+                    return done;
+                }
+                long rows;
+                if (columnar) {
+                    try (CsvReader reader = CsvReader.open(shard.toString());
+                         ColumnFile.Writer writer = ColumnFile.create(output.toString(), OUTPUT_COLUMNS, OUTPUT_TYPES)) {
+                        rows = featurizeRows(reader, writer::writeRow, stylometricValues(adjectives, stopwords, cache),
+                                shardThreads);
+                        writer.commit();
+                    }
+                } else {
+                    // Written beside the output and moved into place, like a ColumnFile
+                    Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+                    try (CsvReader reader = CsvReader.open(shard.toString());
+                         BufferedWriter writer = Files.newBufferedWriter(temp)) {
+                        writer.write(OUTPUT_HEADER);
+                        rows = featurizeRows(reader, writer::write, stylometric(adjectives, stopwords, cache),
+                                shardThreads);
+                    }
+                    Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return Shards.Manifest.Entry.of(output, rows, shard);
+            });
+            Shards.Manifest manifest = new Shards.Manifest(directory, entries);
+            manifest.write();
+
+            int reused = 0;
+            for (Shards.Manifest.Entry entry : entries) {
+                if (previous != null && previous.entry(entry.file) == entry) {
+                    reused++;
+                }
+            }
+            System.out.printf("Featurized %d shards (%d unchanged since the last run), %d reviews in %.1f ms%n",
+                    shards.size() - reused, reused, manifest.rows(), (System.nanoTime() - start) / 1e6);
+        } catch (IOException e) {
+            System.err.println("Error processing shards: " + e.getMessage());
+        }
+    }
+
+    // The stylometric columns of OUTPUT_HEADER, one ReviewScanner per thread walking each
+    // review once for all features
+    private static Supplier<RowFeaturizer<String>> stylometric(Lexicon adjectives, Lexicon stopwords,
+                                                               FeatureCache cache) {
+        return () -> {
+            ReviewScanner scanner = new ReviewScanner(stopwords, adjectives);
+            return (review, label) -> featurize(review, label, scanner, cache);
+        };
+    }
+
+    // The same columns as values, for a ColumnFile
+    private static Supplier<RowFeaturizer<double[]>> stylometricValues(Lexicon adjectives, Lexicon stopwords,
+                                                                       FeatureCache cache) {
+        return () -> {
+            ReviewScanner scanner = new ReviewScanner(stopwords, adjectives);
+            return (review, label) -> featureValues(review, label, scanner, cache);
+        };
+    }
+
+    // Write the features of every remaining review; returns the number of reviews
+    private static <T> long featurizeRows(CsvReader reader, RowSink<T> sink, Supplier<RowFeaturizer<T>> featurizers,
+                                          int threads) throws IOException {
+        if (threads > 1) {
+            return processInParallel(reader, sink, featurizers, threads);
+        }
+        RowFeaturizer<T> featurizer = featurizers.get();
+        long rows = 0;
+        while (nextReview(reader)) {
+            T row = featurizer.featurize(reader.field(0).trim(), reader.intField(1));
+            long start = WRITE_TIMER.start();
+            sink.write(row);
+            WRITE_TIMER.stop(start);
+            rows++;
+        }
+        return rows;
+    }
+
+    // Advance to the next review/label record, skipping the header and blank lines
+    private static boolean nextReview(CsvReader reader) throws IOException {
+        while (reader.next()) {
+            if (reader.recordPosition() == 0 && reader.field(0).startsWith("Review")) {
+                continue;
+            }
+            if (reader.fieldCount() >= 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Build the output line of features for one review
+    private static String featurize(CharSequence review, int label, ReviewScanner scanner, FeatureCache cache)
+            throws IOException {
+        // Process the review to extract features, unless the cache has seen this text
+        FeatureCache.Features features = cache != null
+                ? cache.features(review, scanner)
+                : FeatureCache.Features.of(scanner.scan(review));
+        int pausality = features.pausality;
+        double lexicalDensity = features.lexicalDensity;
+        double readability = features.readability;
+
+        // Prepare the output line with features
+        return String.format("%d,%.2f,%.2f,%.2f,%d\n",
+                label,                              // 'real' column value (0 or 1)
+                pausality / 6.7,                    // Pausality (scaled float)
+                lexicalDensity,                     // Lexical density (float)
+                readability / 6.7,                  // Readability (scaled float)
+                features.adjectiveCount             // Number of adjectives (integer)
+        );
+    }
+
+    // The values of that line, unrounded, in OUTPUT_COLUMNS order
+    private static double[] featureValues(CharSequence review, int label, ReviewScanner scanner, FeatureCache cache)
+            throws IOException {
+        FeatureCache.Features features = cache != null
+                ? cache.features(review, scanner)
+                : FeatureCache.Features.of(scanner.scan(review));
+        return new double[]{label, features.pausality / 6.7, features.lexicalDensity, features.readability / 6.7,
+                features.adjectiveCount};
+    }
+
+    // svmlight line for one review's hashed n-grams
+    private static String hashedRow(SparseVector features, int label) {
+        StringBuilder line = new StringBuilder(16 + features.nonZeros() * 16);
+        line.append(label);
+        for (int k = 0; k < features.nonZeros(); k++) {
+            // float precision is plenty for a normalized count and keeps the file small
+            line.append(' ').append(features.index(k) + 1).append(':').append((float) features.value(k));
+        }
+        return line.append('\n').toString();
+    }
+
+    // Reviews of one unit of work, copied out of the reader's buffer into one char block
+    private static final class ReviewBatch {
+        char[] text = new char[BATCH_SIZE * 512];
+        final int[] ends = new int[BATCH_SIZE];
+        final int[] labels = new int[BATCH_SIZE];
+        int size;
+
+        void add(CharSlice review, int label) {
+            int start = size == 0 ? 0 : ends[size - 1];
+            int end = start + review.length();
+            if (end > text.length) {
+                text = Arrays.copyOf(text, Math.max(end, text.length * 2));
+            }
+            System.arraycopy(review.array(), review.start(), text, start, review.length());
+            ends[size] = end;
+            labels[size] = label;
+            size++;
+        }
+
+        <T> List<T> featurize(RowFeaturizer<T> featurizer) throws IOException {
+            List<T> out = new ArrayList<>(size);
+            CharSlice review = new CharSlice();
+            for (int i = 0; i < size; i++) {
+                review.set(text, i == 0 ? 0 : ends[i - 1], ends[i]);
+                out.add(featurizer.featurize(review, labels[i]));
+            }
+            return out;
+        }
+    }
+
+    // Reader (calling thread) -> worker pool -> writer thread. Reviews are featurized in batches;
+    // the writer takes batch results in submission order, and the bounded queue between them
+    // blocks the reader once enough batches are in flight.
+    private static <T> long processInParallel(CsvReader reader, RowSink<T> sink,
+                                              Supplier<RowFeaturizer<T>> featurizers, int threads) throws IOException {
+        ThreadLocal<RowFeaturizer<T>> workerFeaturizers = ThreadLocal.withInitial(featurizers);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        BlockingQueue<Future<List<T>>> pending = new ArrayBlockingQueue<>(threads * 4);
+        Future<List<T>> endOfInput = CompletableFuture.completedFuture(null);
+
+        ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        Future<?> written = writerThread.submit(() -> {
+            Future<List<T>> batch;
+            while ((batch = pending.take()) != endOfInput) {
+                List<T> rows = batch.get();
+                long start = WRITE_TIMER.start();
+                for (T row : rows) {
+                    sink.write(row);
+                }
+                WRITE_TIMER.stop(start);
+            }
+            return null;
+        });
+
+        try {
+            ReviewBatch batch = new ReviewBatch();
+            boolean writerAlive = true;
+            long rows = 0;
+            while (writerAlive && nextReview(reader)) {
+                batch.add(reader.field(0).trim(), reader.intField(1));
+                rows++;
+                if (batch.size == BATCH_SIZE) {
+                    writerAlive = enqueue(pending, submitBatch(workers, batch, workerFeaturizers), written);
+                    batch = new ReviewBatch();
+                }
+            }
+            if (writerAlive && batch.size > 0) {
+                writerAlive = enqueue(pending, submitBatch(workers, batch, workerFeaturizers), written);
+            }
+            if (writerAlive) {
+                enqueue(pending, endOfInput, written);
+            }
+            written.get();
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing dataset", e);
+        } catch (ExecutionException e) {
+            // Unwrap writer -> batch failures down to the original cause
+            Throwable cause = e.getCause();
+            while (cause instanceof ExecutionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            workers.shutdownNow();
+            writerThread.shutdownNow();
+        }
+    }
+
+    private static <T> Future<List<T>> submitBatch(ExecutorService workers, ReviewBatch batch,
+                                                   ThreadLocal<RowFeaturizer<T>> featurizers) {
+        return workers.submit(() -> batch.featurize(featurizers.get()));
+    }
+
+    // Blocks while the queue is full; gives up (returns false) if the writer has stopped
+    private static <T> boolean enqueue(BlockingQueue<Future<List<T>>> pending, Future<List<T>> batch,
+                                       Future<?> written)
+            throws InterruptedException {
+        while (!pending.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (written.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The feature cache is only a shortcut: if it cannot be opened (not a cache, truncated,
+    // corrupt), featurize without one rather than fail the run (package-private for Pipeline)
+    static FeatureCache openCache(String filePath, Lexicon stopwords, Lexicon adjectives) {
+        try {
+            return FeatureCache.open(filePath, stopwords, adjectives, 1 << 16);
+        } catch (IOException e) {
+            System.err.println("Error opening feature cache, continuing without it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Flush new entries; failing to save them loses nothing but the shortcut next time
+    static void closeCache(FeatureCache cache) {
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.close();
+        } catch (IOException e) {
+            System.err.println("Error saving feature cache: " + e.getMessage());
+        }
+    }
+
     public static void main(String[] args) {
         String inputFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/OG_Dataset.csv"; // Input CSV file
         String outputFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1.csv"; // Output CSV file
         String adjectivesFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/english-adjectives.txt"; // Adjectives file
         String stopwordsFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/stopwords.txt"; // Stopwords file
+        String featureCacheFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/features.cache"; // Kept between runs
+        String checkpointFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1.checkpoint"; // Input offset reached
+        String hashedOutputFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Hashed.svm"; // --hashed output
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        // --columnar: write a binary column file (full precision, read in place by the later stages)
+        if (args.length > 0 && args[0].equals("--columnar")) {
+            String columnarOutputFilePath = "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1"
+                    + ColumnFile.EXTENSION;
+            Lexicon adjectives = loadAdjectives(adjectivesFilePath);
+            Lexicon stopwords = loadStopwords(stopwordsFilePath);
+            FeatureCache cache = openCache(featureCacheFilePath, stopwords, adjectives);
+            try {
+                processDataset(inputFilePath, columnarOutputFilePath, adjectives, stopwords, threads, cache);
+            } finally {
+                closeCache(cache);
+            }
+            System.out.println("Dataset processing completed. Check output file: " + columnarOutputFilePath);
+            return;
+        }
+
+        // --shards <directory or glob> [output directory] [--columnar]: featurize daily shards
+        // concurrently into one output per shard plus a manifest, instead of one big input file
+        if (args.length > 1 && args[0].equals("--shards")) {
+            boolean columnar = Arrays.asList(args).contains("--columnar");
+            String outputDirectory = args.length > 2 && !args[2].equals("--columnar") ? args[2]
+                    : "C:/Users/jaska/OneDrive/Desktop/Minor/rev/preprocessed_Output1";
+            Lexicon adjectives = loadAdjectives(adjectivesFilePath);
+            Lexicon stopwords = loadStopwords(stopwordsFilePath);
+            FeatureCache cache = openCache(featureCacheFilePath, stopwords, adjectives);
+            try {
+                processShards(args[1], outputDirectory, adjectives, stopwords, threads, cache, columnar);
+            } finally {
+                closeCache(cache);
+            }
+            System.out.println("Dataset processing completed. Check output directory: " + outputDirectory);
+            return;
+        }
+
+        // --hashed [bits]: hashed unigram/bigram features for sparse SVM training instead
+        if (args.length > 0 && args[0].equals("--hashed")) {
+            int bits = args.length > 1 ? Integer.parseInt(args[1]) : NgramHasher.DEFAULT_BITS;
+            processDatasetHashed(inputFilePath, hashedOutputFilePath, bits, threads);
+            System.out.println("Dataset processing completed. Check output file: " + hashedOutputFilePath);
+            return;
+        }
 
         // Load adjectives and stopwords
-        Set<String> adjectives = loadAdjectives(adjectivesFilePath);
-        Set<String> stopwords = loadStopwords(stopwordsFilePath);
+        Lexicon adjectives = loadAdjectives(adjectivesFilePath);
+        Lexicon stopwords = loadStopwords(stopwordsFilePath);
 
-        // Process the dataset
-        processDataset(inputFilePath, outputFilePath, adjectives, stopwords);
+        // Process the reviews added since the last run, one featurization worker per core;
+        // reviews seen by earlier runs come from the feature cache
+        FeatureCache cache = openCache(featureCacheFilePath, stopwords, adjectives);
+        try {
+            processDatasetIncrementally(inputFilePath, outputFilePath, adjectives, stopwords, threads, cache,
+                    checkpointFilePath);
+            if (cache != null) {
+                System.out.println("Feature cache: " + cache.hits() + " hits, " + cache.misses() + " misses, "
+                        + cache.size() + " entries");
+            }
+        } finally {
+            closeCache(cache);
+        }
 
         System.out.println("Dataset processing completed. Check output file: " + outputFilePath);
     }